@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import com.imsweb.seerapi.client.SeerApi;
+import com.imsweb.seerapi.client.SeerApiMapper;
+import com.imsweb.seerapi.client.disease.Disease;
+import com.imsweb.seerapi.client.ndc.NdcProduct;
+import com.imsweb.seerapi.client.staging.StagingSchema;
+import com.imsweb.seerapi.client.staging.StagingTable;
+
+/**
+ * Throughput of reading and writing the largest API entities with the shared readers and writers of the client.  Run with "gradlew jmh"; the GC profiler reports the
+ * allocation rate of each benchmark.
+ * <p/>
+ * The fixtures under src/jmh/resources/fixtures are hand-written replicas of API responses; they were not captured since the API was not reachable when they were
+ * made.  Each one copies the field set, value formats and size of a real published entity:
+ * <ul>
+ * <li>disease.json: the "latest" view of Pure erythroid leukemia (9840/3), without the authoring fields (status, assigned_to, note, etc.) which published
+ * entities do not have</li>
+ * <li>ndc_product.json: Verzenio 50 mg (0002-4483) with its packages and SEER*Rx information</li>
+ * <li>staging_schema.json: the TNM breast schema with its NAACCR items, outputs and mappings</li>
+ * <li>staging_table.json: the AJCC 8th edition clinical prognostic stage table for breast (T, N, M, grade, ER, PR and HER2, about 600 rows)</li>
+ * </ul>
+ * Replace them with captured responses (i.e. the body of GET /rest/disease/latest/id/51f6cf58e3e27c3994bd5408) when the API is available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MapperBenchmark {
+
+    @Param({"disease", "staging_schema", "staging_table", "ndc_product"})
+    public String _fixture;
+
+    private byte[] _json;
+    private Object _entity;
+    private ObjectReader _reader;
+    private ObjectWriter _writer;
+
+    @Setup
+    public void setup() throws IOException {
+        Class<?> type;
+        switch (_fixture) {
+            case "disease":
+                type = Disease.class;
+                break;
+            case "staging_schema":
+                type = StagingSchema.class;
+                break;
+            case "staging_table":
+                type = StagingTable.class;
+                break;
+            case "ndc_product":
+                type = NdcProduct.class;
+                break;
+            default:
+                throw new IllegalStateException("Unknown fixture: " + _fixture);
+        }
+
+        _json = readFixture(_fixture + ".json");
+        _reader = SeerApiMapper.reader(type);
+        _writer = SeerApiMapper.writer(type);
+        _entity = _reader.readValue(_json);
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        try (InputStream is = MapperBenchmark.class.getResourceAsStream("/fixtures/" + name)) {
+            if (is == null)
+                throw new IOException("Unable to find fixture " + name);
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) != -1)
+                os.write(buffer, 0, n);
+            return os.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return _reader.readValue(_json);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return _writer.writeValueAsBytes(_entity);
+    }
+
+    /**
+     * Deserialize with a new mapper each time, like the client did for every error response
+     */
+    @Benchmark
+    public Object deserializeNewMapper() throws IOException {
+        return SeerApi.getMapper().readerFor(_reader.getValueType()).readValue(_json);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import retrofit2.Call;
+import retrofit2.Callback;
+
+/**
+ * Asynchronous view of a service interface.  Calls are queued on the OkHttp dispatcher instead of blocking the calling thread, and the
+ * results are returned as CompletableFuture so they can be composed.
+ * <pre>
+ * CompletableFuture&lt;StagingSchema&gt; schema = api.async(StagingService.class).call(s -&gt; s.schemaById("cs", "02.05.50", "breast"));
+ * </pre>
+ * API errors complete the future exceptionally with the same SeerApiException that is thrown by Call.execute(); communication errors
+ * complete it with an IOException.  Cancelling the future cancels the call.
+ * @param <S> service interface
+ */
+public final class AsyncService<S> {
+
+    private final S _service;
+
+    AsyncService(S service) {
+        _service = service;
+    }
+
+    /**
+     * Return the service used to create calls
+     * @return a service interface
+     */
+    public S getService() {
+        return _service;
+    }
+
+    /**
+     * Queue a call
+     * @param request function which creates the call from the service
+     * @param <T> type of the response body
+     * @return a future which completes with the response body (which may be null)
+     */
+    public <T> CompletableFuture<T> call(Function<S, Call<T>> request) {
+        return enqueue(request, retrofit2.Response::body);
+    }
+
+    /**
+     * Queue a call and return the whole response, i.e. to read its headers
+     * @param request function which creates the call from the service
+     * @param <T> type of the response body
+     * @return a future which completes with the successful response
+     */
+    public <T> CompletableFuture<retrofit2.Response<T>> response(Function<S, Call<T>> request) {
+        return enqueue(request, Function.identity());
+    }
+
+    private <T, R> CompletableFuture<R> enqueue(Function<S, Call<T>> request, Function<retrofit2.Response<T>, R> result) {
+        Call<T> call = request.apply(_service);
+
+        CompletableFuture<R> future = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled())
+                call.cancel();
+        });
+
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, retrofit2.Response<T> response) {
+                future.complete(result.apply(response));
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.completeExceptionally(t instanceof ApiErrorException ? t.getCause() : t);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Application interceptor which converts the SeerApiException thrown by ErrorInterceptor to an IOException.  OkHttp only reports
+     * IOException to the callback of queued calls; it must be the first interceptor of the client.
+     */
+    static final class AsyncErrorInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            try {
+                return chain.proceed(chain.request());
+            }
+            catch (SeerApiException e) {
+                throw new ApiErrorException(e);
+            }
+        }
+    }
+
+    private static final class ApiErrorException extends IOException {
+
+        ApiErrorException(SeerApiException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Interceptor which stops calling the API when it appears to be down.  After a number of consecutive transient failures, the circuit
+ * opens and all calls fail immediately with a CircuitOpenException.  Once the open duration has elapsed, a single trial call is allowed:
+ * if it succeeds the circuit closes, otherwise it opens again.
+ * <p/>
+ * The following count as failures: communication errors (IOException other than a canceled call), 429 (Too Many Requests) and every 5xx
+ * status except 501 (Not Implemented).  Every other response counts as a success, including 4xx errors such as 400, 401 or 404 and 501,
+ * since they are answers from a working API which would be the same on the next call.  Canceled calls are not counted at all.
+ * <p/>
+ * This interceptor must run before ErrorInterceptor converts the responses to exceptions; when combined with RetryInterceptor, it should
+ * run after it so that each attempt is counted.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int _failureThreshold;
+    private final long _openDuration;
+
+    private State _state = State.CLOSED;
+    private int _consecutiveFailures;
+    private long _openedAt;
+    private boolean _trialInProgress;
+
+    private final AtomicLong _opened = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param failureThreshold number of consecutive failures which opens the circuit
+     * @param openDuration time the circuit stays open before a trial call is allowed
+     * @param unit unit of the open duration
+     */
+    public CircuitBreakerInterceptor(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+
+        _failureThreshold = failureThreshold;
+        _openDuration = unit.toNanos(openDuration);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        acquire();
+
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        }
+        catch (IOException | RuntimeException e) {
+            // a canceled call says nothing about the API, it only gives back the trial slot
+            if (chain.call().isCanceled())
+                release();
+            else
+                record(false);
+            throw e;
+        }
+
+        int code = response.code();
+        record(code != 429 && (code < 500 || code == 501));
+
+        return response;
+    }
+
+    private synchronized void acquire() {
+        if (_state == State.OPEN && System.nanoTime() - _openedAt >= _openDuration)
+            _state = State.HALF_OPEN;
+
+        if (_state == State.OPEN || (_state == State.HALF_OPEN && _trialInProgress)) {
+            _rejected.incrementAndGet();
+            throw new CircuitOpenException("SEER*API is unavailable; calls are suspended after " + _consecutiveFailures + " consecutive failures");
+        }
+
+        if (_state == State.HALF_OPEN)
+            _trialInProgress = true;
+    }
+
+    private synchronized void release() {
+        _trialInProgress = false;
+    }
+
+    private synchronized void record(boolean success) {
+        boolean trial = _state == State.HALF_OPEN && _trialInProgress;
+        _trialInProgress = false;
+
+        if (success) {
+            _consecutiveFailures = 0;
+            _state = State.CLOSED;
+        }
+        else {
+            _consecutiveFailures++;
+            if (trial || (_state == State.CLOSED && _consecutiveFailures >= _failureThreshold)) {
+                _state = State.OPEN;
+                _openedAt = System.nanoTime();
+                _opened.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Return the state of the circuit
+     * @return the State
+     */
+    public synchronized State getState() {
+        if (_state == State.OPEN && System.nanoTime() - _openedAt >= _openDuration)
+            return State.HALF_OPEN;
+
+        return _state;
+    }
+
+    /**
+     * Return the number of times the circuit opened
+     * @return number of times opened
+     */
+    public long getOpenedCount() {
+        return _opened.get();
+    }
+
+    /**
+     * Return the number of calls which failed immediately because the circuit was open
+     * @return number of rejected calls
+     */
+    public long getRejectedCount() {
+        return _rejected.get();
+    }
+}
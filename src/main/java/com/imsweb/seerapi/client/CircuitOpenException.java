@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+/**
+ * Thrown without calling the API when the circuit breaker is open
+ */
+public class CircuitOpenException extends SeerApiException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -5,7 +5,8 @@ package com.imsweb.seerapi.client;
 
 import java.io.IOException;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import okhttp3.Interceptor;
 import okhttp3.Response;
@@ -15,6 +16,9 @@ import okhttp3.Response;
  */
 public class ErrorInterceptor implements Interceptor {
 
+    // error bodies vary between endpoints, so unknown properties are ignored
+    private static final ObjectReader _ERROR_READER = SeerApiMapper.reader(ErrorResponse.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Response response = chain.proceed(chain.request());
@@ -24,7 +28,7 @@ public class ErrorInterceptor implements Interceptor {
             ErrorResponse error = null;
             if (response.body() != null) {
                 try {
-                    error = new ObjectMapper().readValue(response.body().byteStream(), ErrorResponse.class);
+                    error = _ERROR_READER.readValue(response.body().byteStream());
                 }
                 catch (IOException e) {
                     // sometimes the error message is not right format (like for 404 errors)
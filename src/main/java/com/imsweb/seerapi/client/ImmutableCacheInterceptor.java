@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which marks responses of version-scoped resources as immutable so they are served from the HTTP cache without
+ * revalidation.  Those resources (i.e. a staging schema or table, a NAACCR layout or a disease of a given version) never change.  Other
+ * responses are cached according to the headers returned by the server.
+ */
+public class ImmutableCacheInterceptor implements Interceptor {
+
+    // one year, which is the longest lifetime recommended by RFC 7234
+    private static final String _IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // version-scoped resources; the "latest" version is excluded since it changes over time
+    private static final List<Pattern> _IMMUTABLE_PATHS = Arrays.asList(
+            Pattern.compile("/staging/[^/]+/(?!latest/)[^/]+/(schema|table)/[^/]+(/tables|/schemas)?$"),
+            Pattern.compile("/naaccr/(flat|xml)/(?!latest$|latest/|versions$)[^/]+(/item/[^/]+|/id/[^/]+)?$"),
+            Pattern.compile("/(disease|rx|glossary)/(?!latest/)[^/]+/id/[^/]+$"));
+
+    /**
+     * Return true if the resource at the path never changes
+     * @param path an encoded URL path
+     * @return true if the path is version-scoped
+     */
+    public static boolean isImmutable(String path) {
+        return _IMMUTABLE_PATHS.stream().anyMatch(p -> p.matcher(path).find());
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        if ("GET".equals(request.method()) && response.code() == 200 && isImmutable(request.url().encodedPath()))
+            return response.newBuilder()
+                    .header("Cache-Control", _IMMUTABLE_CACHE_CONTROL)
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .build();
+
+        return response;
+    }
+}
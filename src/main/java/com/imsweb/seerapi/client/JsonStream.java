@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Elements of a JSON array response which are read from the response body one at a time, as they are requested.  Only the current element
+ * is held in memory.  The response body stays open until all the elements are read or the stream is closed, so a stream which is not read
+ * to the end must be closed (i.e. using try-with-resources).
+ * <p/>
+ * Read errors are thrown as unchecked exceptions by hasNext() and next().  Streamed calls are never coalesced by the single-flight option
+ * of the client, so their bodies are not buffered.
+ * @param <T> type of the elements
+ */
+public final class JsonStream<T> implements Iterator<T>, Closeable {
+
+    private final MappingIterator<T> _iterator;
+    private final ResponseBody _body;
+
+    private boolean _closed;
+
+    JsonStream(MappingIterator<T> iterator, ResponseBody body) {
+        _iterator = iterator;
+        _body = body;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (_closed)
+            return false;
+
+        boolean hasNext;
+        try {
+            hasNext = _iterator.hasNext();
+        }
+        catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        // release the connection as soon as the last element is read
+        if (!hasNext)
+            close();
+
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        try {
+            return _iterator.next();
+        }
+        catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the remaining elements as a sequential Stream; closing the Stream closes this object
+     * @return a Stream of elements
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (_closed)
+            return;
+
+        _closed = true;
+        try {
+            _iterator.close();
+        }
+        catch (IOException e) {
+            // nothing to do, the body is closed below
+        }
+        finally {
+            _body.close();
+        }
+    }
+}
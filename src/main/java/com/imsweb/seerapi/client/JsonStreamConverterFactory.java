@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Converter factory for the calls returning a JsonStream.  The response body is not read by the converter; it is handed to the JsonStream
+ * which reads it as the elements are requested.  All other types are left to the next factory.
+ */
+final class JsonStreamConverterFactory extends Converter.Factory {
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        Type elementType = elementType(type);
+        if (elementType == null)
+            return null;
+
+        ObjectReader reader = SeerApiMapper.reader(elementType);
+
+        return body -> {
+            try {
+                MappingIterator<Object> iterator = reader.readValues(body.byteStream());
+                return new JsonStream<>(iterator, body);
+            }
+            catch (IOException | RuntimeException e) {
+                body.close();
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Return the element type of a JsonStream type
+     * @param type a type
+     * @return the type argument of the JsonStream, or null if the type is not a JsonStream
+     */
+    static Type elementType(Type type) {
+        if (type instanceof ParameterizedType && ((ParameterizedType)type).getRawType() == JsonStream.class)
+            return ((ParameterizedType)type).getActualTypeArguments()[0];
+
+        return null;
+    }
+}
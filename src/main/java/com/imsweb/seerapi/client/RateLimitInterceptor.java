@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Interceptor which limits the rate of calls made to the API.  A global limiter applies to all calls; limiters can also be added
+ * for path prefixes relative to the base URL (i.e. "staging/").  A call matching a prefix must acquire a permit from both the global
+ * limiter and the limiter of the longest matching prefix.
+ * <p/>
+ * SeerApi installs it as an application interceptor after the RetryInterceptor, so every attempt of a retried call acquires permits.
+ * Responses served from the HTTP cache also use permits since the cache is only checked further down the chain.
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private final String _basePath;
+    private final RateLimiter _limiter;
+    private final Map<String, RateLimiter> _prefixLimiters;
+
+    /**
+     * Constructor
+     * @param basePath encoded path of the base URL (i.e. "/rest/")
+     * @param limiter global limiter, may be null
+     * @param prefixLimiters limiters by path prefix, relative to the base path
+     */
+    public RateLimitInterceptor(String basePath, RateLimiter limiter, Map<String, RateLimiter> prefixLimiters) {
+        _basePath = basePath.endsWith("/") ? basePath : basePath + "/";
+        _limiter = limiter;
+        _prefixLimiters = Collections.unmodifiableMap(new LinkedHashMap<>(prefixLimiters));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String path = chain.request().url().encodedPath();
+        if (path.startsWith(_basePath))
+            path = path.substring(_basePath.length());
+
+        try {
+            if (_limiter != null)
+                _limiter.acquire();
+
+            RateLimiter prefixLimiter = getLimiter(path);
+            if (prefixLimiter != null)
+                prefixLimiter.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+        }
+
+        return chain.proceed(chain.request());
+    }
+
+    private RateLimiter getLimiter(String path) {
+        String longest = null;
+        for (String prefix : _prefixLimiters.keySet())
+            if (path.startsWith(prefix) && (longest == null || prefix.length() > longest.length()))
+                longest = prefix;
+
+        return longest == null ? null : _prefixLimiters.get(longest);
+    }
+
+    /**
+     * Return the global limiter
+     * @return the limiter, or null if there is no global limit
+     */
+    public RateLimiter getLimiter() {
+        return _limiter;
+    }
+
+    /**
+     * Return the limiters by path prefix
+     * @return an unmodifiable map of limiters
+     */
+    public Map<String, RateLimiter> getPrefixLimiters() {
+        return _prefixLimiters;
+    }
+}
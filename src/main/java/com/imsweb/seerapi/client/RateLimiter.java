@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter.  The bucket holds up to "burst" permits and is refilled at a fixed rate.  When it is empty, callers are queued
+ * (each one reserves the next permit) and wait until their permit is available, so the outbound rate never exceeds the limit and calls
+ * are not rejected.
+ * <p/>
+ * Instances are thread-safe.
+ */
+public class RateLimiter {
+
+    private final double _permitsPerSecond;
+    private final int _burst;
+
+    private double _tokens;
+    private long _lastRefill;
+
+    private final AtomicLong _acquired = new AtomicLong();
+    private final AtomicLong _delayed = new AtomicLong();
+    private final AtomicLong _totalWait = new AtomicLong();
+    private final AtomicLong _maxWait = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param permitsPerSecond number of permits added per second
+     * @param burst maximum number of permits which can be acquired at once after a quiet period
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0))
+            throw new IllegalArgumentException("Permits per second must be positive");
+        if (burst < 1)
+            throw new IllegalArgumentException("Burst must be at least 1");
+
+        _permitsPerSecond = permitsPerSecond;
+        _burst = burst;
+        _tokens = burst;
+        _lastRefill = System.nanoTime();
+    }
+
+    public double getPermitsPerSecond() {
+        return _permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return _burst;
+    }
+
+    /**
+     * Acquire a permit, waiting until it is available
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+
+        _acquired.incrementAndGet();
+        if (wait > 0) {
+            _delayed.incrementAndGet();
+            _totalWait.addAndGet(wait);
+            _maxWait.accumulateAndGet(wait, Math::max);
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Reserve the next permit
+     * @return the time to wait for the permit in nanoseconds
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        _tokens = Math.min(_burst, _tokens + (now - _lastRefill) * _permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        _lastRefill = now;
+
+        // the bucket goes negative when callers are queued
+        _tokens -= 1;
+
+        return _tokens >= 0 ? 0 : (long)Math.ceil(-_tokens / _permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Return the number of permits acquired
+     * @return number of permits
+     */
+    public long getAcquiredCount() {
+        return _acquired.get();
+    }
+
+    /**
+     * Return the number of permits which were not immediately available
+     * @return number of delayed permits
+     */
+    public long getDelayedCount() {
+        return _delayed.get();
+    }
+
+    /**
+     * Return the total time spent waiting for permits
+     * @param unit unit of the result
+     * @return total wait time
+     */
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(_totalWait.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the longest time spent waiting for a single permit
+     * @param unit unit of the result
+     * @return maximum wait time
+     */
+    public long getMaxWaitTime(TimeUnit unit) {
+        return unit.convert(_maxWait.get(), TimeUnit.NANOSECONDS);
+    }
+}
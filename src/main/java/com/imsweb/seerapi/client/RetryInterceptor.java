@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Interceptor which retries calls failing with a transient error: a communication error (including timeouts), 429 (too many requests)
+ * or a 5xx status other than 501.  The delay before each retry is chosen at random between 0 and an exponentially growing limit (full
+ * jitter) so that many clients do not retry at the same time.  A Retry-After header returned by the server is used as the delay instead;
+ * if it is longer than the maximum delay, the call is not retried.
+ * <p/>
+ * Only idempotent methods (GET, HEAD, PUT, DELETE and OPTIONS) are retried unless POST retries are enabled.  The POST calls of SEER*API
+ * (staging, schema lookups, etc.) do not change anything on the server and can safely be retried.
+ * <p/>
+ * This interceptor must run before ErrorInterceptor converts the responses to exceptions.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final Set<String> _IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS"));
+
+    private final int _maxRetries;
+    private final long _initialDelay;
+    private final long _maxDelay;
+    private final boolean _retryPost;
+
+    private final AtomicLong _attempts = new AtomicLong();
+    private final AtomicLong _retries = new AtomicLong();
+    private final AtomicLong _exhausted = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param maxRetries maximum number of retries of a single call
+     * @param initialDelay limit of the delay before the first retry; the limit doubles with each retry
+     * @param maxDelay maximum delay before a retry
+     * @param unit unit of the delays
+     * @param retryPost if true, POST calls are retried
+     */
+    public RetryInterceptor(int maxRetries, long initialDelay, long maxDelay, TimeUnit unit, boolean retryPost) {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("Maximum retries cannot be negative");
+        if (initialDelay < 0 || maxDelay < initialDelay)
+            throw new IllegalArgumentException("Invalid retry delays");
+
+        _maxRetries = maxRetries;
+        _initialDelay = unit.toMillis(initialDelay);
+        _maxDelay = unit.toMillis(maxDelay);
+        _retryPost = retryPost;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        boolean retryable = _IDEMPOTENT_METHODS.contains(request.method()) || (_retryPost && "POST".equals(request.method()));
+
+        for (int retry = 0; ; retry++) {
+            _attempts.incrementAndGet();
+
+            Response response = null;
+            IOException error = null;
+            try {
+                response = chain.proceed(request);
+            }
+            catch (IOException e) {
+                error = e;
+            }
+
+            boolean transientFailure = error != null ? !chain.call().isCanceled() : isTransient(response.code());
+            if (!transientFailure || !retryable || retry >= _maxRetries) {
+                if (transientFailure && retryable)
+                    _exhausted.incrementAndGet();
+                if (error != null)
+                    throw error;
+                return response;
+            }
+
+            long delay = ThreadLocalRandom.current().nextLong(Math.min(_maxDelay, _initialDelay << Math.min(retry, 30)) + 1);
+            if (response != null) {
+                long retryAfter = getRetryAfter(response);
+                if (retryAfter > _maxDelay) {
+                    _exhausted.incrementAndGet();
+                    return response;
+                }
+                if (retryAfter >= 0)
+                    delay = retryAfter;
+                response.close();
+            }
+
+            _retries.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+
+    private static boolean isTransient(int code) {
+        return code == 429 || (code >= 500 && code != 501);
+    }
+
+    /**
+     * Return the Retry-After delay of a response (either a number of seconds or an HTTP date)
+     * @return the delay in milliseconds, or -1 if there is no valid header
+     */
+    static long getRetryAfter(Response response) {
+        String value = response.header("Retry-After");
+        if (value == null)
+            return -1;
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        }
+        catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Return the number of attempts made, including the first attempt of each call
+     * @return number of attempts
+     */
+    public long getAttemptCount() {
+        return _attempts.get();
+    }
+
+    /**
+     * Return the number of retries made
+     * @return number of retries
+     */
+    public long getRetryCount() {
+        return _retries.get();
+    }
+
+    /**
+     * Return the number of calls which still failed with a transient error when no more retries were allowed
+     * @return number of calls
+     */
+    public long getExhaustedCount() {
+        return _exhausted.get();
+    }
+}
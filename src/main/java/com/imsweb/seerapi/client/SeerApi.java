@@ -8,7 +8,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -16,14 +22,23 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
 import com.imsweb.seerapi.client.disease.DiseaseService;
 import com.imsweb.seerapi.client.glossary.GlossaryService;
 import com.imsweb.seerapi.client.hcpcs.HcpcsService;
+import com.imsweb.seerapi.client.metrics.ApiMetrics;
+import com.imsweb.seerapi.client.metrics.MetricsConverterFactory;
+import com.imsweb.seerapi.client.metrics.MetricsEventListener;
 import com.imsweb.seerapi.client.mph.MphService;
 import com.imsweb.seerapi.client.naaccr.NaaccrService;
 import com.imsweb.seerapi.client.ndc.NdcService;
@@ -47,17 +62,49 @@ public final class SeerApi {
     private StagingService _stagingService;
     private SurgeryService _surgeryService;
     private HcpcsService _hcpcsService;
+    private Cache _cache;
+    private RetryInterceptor _retryInterceptor;
+    private CircuitBreakerInterceptor _circuitBreaker;
+    private RateLimitInterceptor _rateLimitInterceptor;
+    private SingleFlightInterceptor _singleFlightInterceptor;
+    private ApiMetrics _metrics;
+    private Retrofit _asyncRetrofit;
+    private Map<Class<?>, AsyncService<?>> _asyncServices = new ConcurrentHashMap<>();
 
     /**
      * Creates a client API root object
-     * @param baseUrl base URL for API
-     * @param apiKey API key
+     * @param builder builder containing the connection settings
      */
-    private SeerApi(String baseUrl, final String apiKey) {
+    private SeerApi(Builder builder) {
+        String baseUrl = builder._url;
         if (!baseUrl.endsWith("/"))
             baseUrl += "/";
 
-        OkHttpClient client = new OkHttpClient.Builder()
+        final String apiKey = builder._apiKey;
+
+        OkHttpClient.Builder clientBuilder = builder._client != null ? builder._client.newBuilder() : new OkHttpClient.Builder();
+
+        // a new dispatcher is created rather than changing the one of a supplied client, which may be shared
+        if (builder._executor != null || builder._maxRequests != null || builder._maxRequestsPerHost != null) {
+            Dispatcher dispatcher = builder._executor != null ? new Dispatcher(builder._executor) : new Dispatcher();
+            if (builder._maxRequests != null)
+                dispatcher.setMaxRequests(builder._maxRequests);
+            if (builder._maxRequestsPerHost != null)
+                dispatcher.setMaxRequestsPerHost(builder._maxRequestsPerHost);
+            clientBuilder.dispatcher(dispatcher);
+        }
+        if (builder._connectionPool != null)
+            clientBuilder.connectionPool(builder._connectionPool);
+        if (builder._protocols != null)
+            clientBuilder.protocols(builder._protocols);
+        if (builder._connectTimeout != null)
+            clientBuilder.connectTimeout(builder._connectTimeout, TimeUnit.MILLISECONDS);
+        if (builder._readTimeout != null)
+            clientBuilder.readTimeout(builder._readTimeout, TimeUnit.MILLISECONDS);
+        if (builder._writeTimeout != null)
+            clientBuilder.writeTimeout(builder._writeTimeout, TimeUnit.MILLISECONDS);
+
+        clientBuilder
                 .addInterceptor(chain -> {
                     Request original = chain.request();
 
@@ -70,12 +117,51 @@ public final class SeerApi {
 
                     return chain.proceed(request);
                 })
-                .addInterceptor(new ErrorInterceptor())
-                .build();
+                .addInterceptor(new ErrorInterceptor());
+
+        // identical calls are coalesced before retries so a group of calls is only retried once
+        if (builder._singleFlight) {
+            _singleFlightInterceptor = new SingleFlightInterceptor();
+            clientBuilder.addInterceptor(_singleFlightInterceptor);
+        }
+
+        // retries and the circuit breaker need to see the responses before they are converted to exceptions
+        if (builder._maxRetries != null) {
+            _retryInterceptor = new RetryInterceptor(builder._maxRetries, builder._retryInitialDelay, builder._retryMaxDelay, TimeUnit.MILLISECONDS, builder._retryPost);
+            clientBuilder.addInterceptor(_retryInterceptor);
+        }
+        if (builder._failureThreshold != null) {
+            _circuitBreaker = new CircuitBreakerInterceptor(builder._failureThreshold, builder._openDuration, TimeUnit.MILLISECONDS);
+            clientBuilder.addInterceptor(_circuitBreaker);
+        }
+
+        // the rate is limited after the retries so each attempt uses permits, and after the circuit breaker so rejected calls do not
+        if (builder._rateLimiter != null || !builder._prefixRateLimiters.isEmpty()) {
+            _rateLimitInterceptor = new RateLimitInterceptor(HttpUrl.get(baseUrl).encodedPath(), builder._rateLimiter, builder._prefixRateLimiters);
+            clientBuilder.addInterceptor(_rateLimitInterceptor);
+        }
+
+        if (builder._cacheDirectory != null) {
+            _cache = new Cache(builder._cacheDirectory, builder._cacheMaxSize);
+            clientBuilder.cache(_cache).addNetworkInterceptor(new ImmutableCacheInterceptor());
+        }
+
+        // all clients share the mapper so its (de)serializer caches are only built once
+        SeerApiMapper.warm(DiseaseService.class, GlossaryService.class, MphService.class, NaaccrService.class, NdcService.class, RxService.class, SiteRecodeService.class,
+                StagingService.class, SurgeryService.class, HcpcsService.class);
+        Converter.Factory converterFactory = JacksonConverterFactory.create(SeerApiMapper.getMapper());
+        if (builder._metrics != null) {
+            _metrics = builder._metrics;
+            clientBuilder.eventListenerFactory(MetricsEventListener.factory(_metrics));
+            converterFactory = new MetricsConverterFactory(converterFactory, _metrics);
+        }
+
+        OkHttpClient client = clientBuilder.build();
 
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(baseUrl)
-                .addConverterFactory(JacksonConverterFactory.create(getMapper()))
+                .addConverterFactory(new JsonStreamConverterFactory())
+                .addConverterFactory(converterFactory)
                 .client(client)
                 .build();
 
@@ -90,13 +176,19 @@ public final class SeerApi {
         _stagingService = retrofit.create(StagingService.class);
         _surgeryService = retrofit.create(SurgeryService.class);
         _hcpcsService = retrofit.create(HcpcsService.class);
+
+        // queued calls share the connection pool and dispatcher but need API errors reported as IOException
+        OkHttpClient.Builder asyncClient = client.newBuilder();
+        asyncClient.interceptors().add(0, new AsyncService.AsyncErrorInterceptor());
+        _asyncRetrofit = retrofit.newBuilder().client(asyncClient.build()).build();
     }
 
     /**
-     * Return the internal ObjectMapper
+     * Return a new ObjectMapper configured like the one used to read and write all API entities.  The client itself uses a shared instance
+     * (see SeerApiMapper).
      * @return an Objectmapper
      */
-    static ObjectMapper getMapper() {
+    public static ObjectMapper getMapper() {
         ObjectMapper mapper = new ObjectMapper();
 
         // do not write null values
@@ -113,6 +205,84 @@ public final class SeerApi {
         return mapper;
     }
 
+    /**
+     * Return the retry interceptor, which counts attempts and retries
+     * @return the interceptor, or null if retries were not enabled in the Builder
+     */
+    public RetryInterceptor getRetryInterceptor() {
+        return _retryInterceptor;
+    }
+
+    /**
+     * Return the circuit breaker, which reports its state and counts rejected calls
+     * @return the circuit breaker, or null if it was not enabled in the Builder
+     */
+    public CircuitBreakerInterceptor getCircuitBreaker() {
+        return _circuitBreaker;
+    }
+
+    /**
+     * Return the rate limit interceptor, which gives access to the limiters and their wait times
+     * @return the interceptor, or null if no rate limit was set in the Builder
+     */
+    public RateLimitInterceptor getRateLimitInterceptor() {
+        return _rateLimitInterceptor;
+    }
+
+    /**
+     * Return the single-flight interceptor, which counts network and coalesced calls
+     * @return the interceptor, or null if coalescing was not enabled in the Builder
+     */
+    public SingleFlightInterceptor getSingleFlightInterceptor() {
+        return _singleFlightInterceptor;
+    }
+
+    /**
+     * Return the metrics receiving the timing, status and size of all calls
+     * @return the metrics, or null if none were set in the Builder
+     */
+    public ApiMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Return the HTTP response cache
+     * @return the cache, or null if caching was not enabled in the Builder
+     */
+    public Cache getCache() {
+        return _cache;
+    }
+
+    /**
+     * Return the number of responses served from the cache, including responses revalidated with a conditional request
+     * @return number of cache hits
+     */
+    public long getCacheHitCount() {
+        return _cache == null ? 0 : _cache.hitCount();
+    }
+
+    /**
+     * Return the number of responses which were not found in the cache
+     * @return number of cache misses
+     */
+    public long getCacheMissCount() {
+        return _cache == null ? 0 : _cache.requestCount() - _cache.hitCount();
+    }
+
+    /**
+     * Return an asynchronous view of a service
+     * <pre>
+     * api.async(StagingService.class).call(s -&gt; s.schemaById("cs", "02.05.50", "breast")).thenAccept(...);
+     * </pre>
+     * @param service service interface (i.e. StagingService.class)
+     * @param <S> service interface
+     * @return an AsyncService
+     */
+    @SuppressWarnings("unchecked")
+    public <S> AsyncService<S> async(Class<S> service) {
+        return (AsyncService<S>)_asyncServices.computeIfAbsent(service, k -> new AsyncService<>(_asyncRetrofit.create(service)));
+    }
+
     /**
      * Return the disease service
      * @return an interface to all the disease APIs
@@ -207,6 +377,27 @@ public final class SeerApi {
 
         private String _url;
         private String _apiKey;
+        private File _cacheDirectory;
+        private long _cacheMaxSize;
+        private OkHttpClient _client;
+        private ExecutorService _executor;
+        private Integer _maxRequests;
+        private Integer _maxRequestsPerHost;
+        private ConnectionPool _connectionPool;
+        private List<Protocol> _protocols;
+        private Long _connectTimeout;
+        private Long _readTimeout;
+        private Long _writeTimeout;
+        private Integer _maxRetries;
+        private long _retryInitialDelay;
+        private long _retryMaxDelay;
+        private boolean _retryPost;
+        private Integer _failureThreshold;
+        private long _openDuration;
+        private RateLimiter _rateLimiter;
+        private Map<String, RateLimiter> _prefixRateLimiters = new LinkedHashMap<>();
+        private boolean _singleFlight;
+        private ApiMetrics _metrics;
 
         /**
          * Return a list of user properties from the local .seerapi file
@@ -269,8 +460,217 @@ public final class SeerApi {
             return this;
         }
 
+        /**
+         * Enable a disk cache of HTTP responses.  Version-scoped resources (schemas, tables, NAACCR layouts, etc.) are cached as immutable;
+         * other responses are cached and revalidated (ETag/Last-Modified) according to the server headers.
+         * @param directory cache directory; it should not be shared with another cache
+         * @param maxSize maximum size of the cache in bytes
+         * @return the Builder
+         */
+        public Builder cache(File directory, long maxSize) {
+            if (maxSize < 1)
+                throw new IllegalArgumentException("Maximum cache size must be at least 1 byte");
+
+            _cacheDirectory = directory;
+            _cacheMaxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Use a pre-configured client.  The API key, error handling and cache are added to a copy of the client, which shares its connection
+         * pool and dispatcher.
+         * @param client an OkHttpClient
+         * @return the Builder
+         */
+        public Builder client(OkHttpClient client) {
+            _client = client;
+            return this;
+        }
+
+        /**
+         * Set the executor used to run queued (asynchronous) calls
+         * @param executor an executor
+         * @return the Builder
+         */
+        public Builder executor(ExecutorService executor) {
+            _executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of calls running at the same time (OkHttp defaults to 64)
+         * @param maxRequests maximum number of calls
+         * @return the Builder
+         */
+        public Builder maxRequests(int maxRequests) {
+            if (maxRequests < 1)
+                throw new IllegalArgumentException("Maximum requests must be at least 1");
+
+            _maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of calls running at the same time to the API host (OkHttp defaults to 5)
+         * @param maxRequestsPerHost maximum number of calls per host
+         * @return the Builder
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1)
+                throw new IllegalArgumentException("Maximum requests per host must be at least 1");
+
+            _maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Set the connection pool size and keep-alive (OkHttp defaults to 5 idle connections kept for 5 minutes)
+         * @param maxIdleConnections maximum number of idle connections
+         * @param keepAlive time an idle connection is kept
+         * @param unit unit of the keep-alive time
+         * @return the Builder
+         */
+        public Builder connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+            _connectionPool = new ConnectionPool(maxIdleConnections, keepAlive, unit);
+            return this;
+        }
+
+        /**
+         * Set the protocols to use (OkHttp defaults to HTTP/2 when supported by the server, otherwise HTTP/1.1).  HTTP/2 multiplexes
+         * concurrent calls over a single connection.
+         * @param protocols list of protocols
+         * @return the Builder
+         */
+        public Builder protocols(List<Protocol> protocols) {
+            _protocols = protocols;
+            return this;
+        }
+
+        /**
+         * Set the connect timeout (OkHttp defaults to 10 seconds)
+         * @param timeout timeout, 0 for no timeout
+         * @param unit unit of the timeout
+         * @return the Builder
+         */
+        public Builder connectTimeout(long timeout, TimeUnit unit) {
+            _connectTimeout = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Set the read timeout (OkHttp defaults to 10 seconds)
+         * @param timeout timeout, 0 for no timeout
+         * @param unit unit of the timeout
+         * @return the Builder
+         */
+        public Builder readTimeout(long timeout, TimeUnit unit) {
+            _readTimeout = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Set the write timeout (OkHttp defaults to 10 seconds)
+         * @param timeout timeout, 0 for no timeout
+         * @param unit unit of the timeout
+         * @return the Builder
+         */
+        public Builder writeTimeout(long timeout, TimeUnit unit) {
+            _writeTimeout = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Retry calls failing with a transient error (communication errors, 429 and 5xx) using exponential backoff with jitter.  See
+         * RetryInterceptor.
+         * @param maxRetries maximum number of retries of a single call
+         * @param initialDelay limit of the delay before the first retry; the limit doubles with each retry
+         * @param maxDelay maximum delay before a retry; a longer Retry-After returned by the server is not retried
+         * @param unit unit of the delays
+         * @return the Builder
+         */
+        public Builder retry(int maxRetries, long initialDelay, long maxDelay, TimeUnit unit) {
+            _maxRetries = maxRetries;
+            _retryInitialDelay = unit.toMillis(initialDelay);
+            _retryMaxDelay = unit.toMillis(maxDelay);
+            return this;
+        }
+
+        /**
+         * Also retry POST calls (staging, schema lookups, etc.); by default only idempotent methods are retried
+         * @param retryPost if true, POST calls are retried
+         * @return the Builder
+         */
+        public Builder retryPost(boolean retryPost) {
+            _retryPost = retryPost;
+            return this;
+        }
+
+        /**
+         * Fail calls immediately after a number of consecutive transient failures.  Communication errors, 429 and 5xx responses other
+         * than 501 are failures; any other response, including 4xx errors and 501, resets the count.  See CircuitBreakerInterceptor.
+         * @param failureThreshold number of consecutive failures which opens the circuit
+         * @param openDuration time the circuit stays open before a trial call is allowed
+         * @param unit unit of the open duration
+         * @return the Builder
+         */
+        public Builder circuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+            _failureThreshold = failureThreshold;
+            _openDuration = unit.toMillis(openDuration);
+            return this;
+        }
+
+        /**
+         * Limit the rate of calls made to the API.  Calls over the limit wait for a permit instead of failing.  This is useful when several
+         * processes share the same API key.
+         * <p/>
+         * Every attempt of a retried call uses a permit, while calls rejected by an open circuit breaker do not.  Since the limit is applied
+         * before the HTTP cache, calls answered from the cache also use a permit.
+         * @param permitsPerSecond maximum sustained number of calls per second
+         * @param burst maximum number of calls which can be made at once after a quiet period
+         * @return the Builder
+         */
+        public Builder rateLimit(double permitsPerSecond, int burst) {
+            _rateLimiter = new RateLimiter(permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Limit the rate of calls made to the API for a path prefix, in addition to the global limit
+         * @param pathPrefix path prefix relative to the base URL (i.e. "staging/")
+         * @param permitsPerSecond maximum sustained number of calls per second
+         * @param burst maximum number of calls which can be made at once after a quiet period
+         * @return the Builder
+         */
+        public Builder rateLimit(String pathPrefix, double permitsPerSecond, int burst) {
+            _prefixRateLimiters.put(pathPrefix.startsWith("/") ? pathPrefix.substring(1) : pathPrefix, new RateLimiter(permitsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Coalesce identical GET calls made at the same time into a single network call.  Calls of @Streaming methods are not coalesced
+         * since their responses would have to be buffered.  See SingleFlightInterceptor.
+         * @param singleFlight if true, identical calls are coalesced
+         * @return the Builder
+         */
+        public Builder singleFlight(boolean singleFlight) {
+            _singleFlight = singleFlight;
+            return this;
+        }
+
+        /**
+         * Report the latency, status, size, connection and deserialization time of all calls.  InMemoryApiMetrics keeps the metrics per
+         * endpoint in memory; other implementations can forward them to a monitoring system.  This replaces the event listener of a
+         * supplied client.
+         * @param metrics metrics
+         * @return the Builder
+         */
+        public Builder metrics(ApiMetrics metrics) {
+            _metrics = metrics;
+            return this;
+        }
+
         public SeerApi connect() {
-            return new SeerApi(_url, _apiKey);
+            return new SeerApi(this);
         }
     }
 
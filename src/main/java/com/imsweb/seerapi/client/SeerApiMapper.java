@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import retrofit2.Call;
+import retrofit2.http.Body;
+
+/**
+ * Holder of the ObjectMapper shared by all the clients, and of readers and writers specialized by type.  Readers and writers are immutable
+ * and resolve their (de)serializers when created, so creating them once keeps the Jackson introspection off the calls.  The mapper itself
+ * is never exposed so its configuration cannot be changed; use SeerApi.getMapper() to get a mapper which can be customized.
+ */
+public final class SeerApiMapper {
+
+    private static final ObjectMapper _MAPPER = SeerApi.getMapper();
+
+    private static final Map<Type, ObjectReader> _READERS = new ConcurrentHashMap<>();
+    private static final Map<Type, ObjectWriter> _WRITERS = new ConcurrentHashMap<>();
+
+    private SeerApiMapper() {
+    }
+
+    /**
+     * Return the shared mapper
+     * @return the ObjectMapper
+     */
+    static ObjectMapper getMapper() {
+        return _MAPPER;
+    }
+
+    /**
+     * Return the reader for a type
+     * @param type a class or a generic type (i.e. the type argument of a Call)
+     * @return an ObjectReader
+     */
+    public static ObjectReader reader(Type type) {
+        return _READERS.computeIfAbsent(type, t -> _MAPPER.readerFor(_MAPPER.getTypeFactory().constructType(t)));
+    }
+
+    /**
+     * Return the writer for a type
+     * @param type a class or a generic type
+     * @return an ObjectWriter
+     */
+    public static ObjectWriter writer(Type type) {
+        return _WRITERS.computeIfAbsent(type, t -> _MAPPER.writerFor(_MAPPER.getTypeFactory().constructType(t)));
+    }
+
+    /**
+     * Create the readers of all the response types and the writers of all the request body types of service interfaces
+     * @param services service interfaces
+     */
+    public static void warm(Class<?>... services) {
+        for (Class<?> service : services) {
+            for (Method method : service.getMethods()) {
+                Type returnType = method.getGenericReturnType();
+                if (returnType instanceof ParameterizedType && ((ParameterizedType)returnType).getRawType() == Call.class) {
+                    Type responseType = ((ParameterizedType)returnType).getActualTypeArguments()[0];
+                    Type elementType = JsonStreamConverterFactory.elementType(responseType);
+                    reader(elementType != null ? elementType : responseType);
+                }
+
+                Annotation[][] annotations = method.getParameterAnnotations();
+                for (int i = 0; i < annotations.length; i++)
+                    for (Annotation annotation : annotations[i])
+                        if (annotation instanceof Body)
+                            writer(method.getGenericParameterTypes()[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import retrofit2.Invocation;
+import retrofit2.http.Streaming;
+
+/**
+ * Interceptor which coalesces identical GET calls made at the same time.  The first call (the leader) goes to the network; calls for the
+ * same URL made before it completes wait for it and receive a copy of its response.  Each caller deserializes its own copy of the body, so
+ * the returned entities are never shared between callers.
+ * <p/>
+ * The leader's response body is buffered in memory, so calls of service methods annotated with @Streaming are never coalesced.  A
+ * follower waits no longer than its own call timeout, or its read timeout when it has no call timeout, and stops waiting as soon as it
+ * is canceled.
+ */
+public class SingleFlightInterceptor implements Interceptor {
+
+    // maximum time a follower waits before checking whether it was canceled
+    private static final long _CANCEL_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Map<String, CompletableFuture<Snapshot>> _inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong _networkCalls = new AtomicLong();
+    private final AtomicLong _coalescedCalls = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()) || isStreaming(request))
+            return chain.proceed(request);
+
+        String key = request.url().toString();
+        CompletableFuture<Snapshot> flight = new CompletableFuture<>();
+        CompletableFuture<Snapshot> existing = _inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            Snapshot snapshot = await(existing, chain);
+
+            // the leader was canceled; make the call instead
+            if (snapshot == null)
+                return chain.proceed(request);
+
+            _coalescedCalls.incrementAndGet();
+            return snapshot.toResponse(request);
+        }
+
+        _networkCalls.incrementAndGet();
+        try {
+            Response response = chain.proceed(request);
+            Snapshot snapshot = new Snapshot(response);
+            flight.complete(snapshot);
+            return snapshot.toResponse(request);
+        }
+        catch (IOException | RuntimeException e) {
+            if (chain.call().isCanceled())
+                flight.complete(null);
+            else
+                flight.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            _inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Return true if the request is made by a service method annotated with @Streaming, whose response must not be buffered
+     */
+    private static boolean isStreaming(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+
+        return invocation != null && invocation.method().isAnnotationPresent(Streaming.class);
+    }
+
+    /**
+     * Wait for the leader's snapshot, for no longer than the call timeout of the follower (or its read timeout if it has no call timeout)
+     */
+    private static Snapshot await(CompletableFuture<Snapshot> flight, Chain chain) throws IOException {
+        long timeout = chain.call().timeout().timeoutNanos();
+        if (timeout == 0)
+            timeout = TimeUnit.MILLISECONDS.toNanos(chain.readTimeoutMillis());
+        long deadline = System.nanoTime() + timeout;
+
+        try {
+            // the wait is done in slices so a canceled follower stops waiting
+            while (true) {
+                if (chain.call().isCanceled())
+                    throw new IOException("Canceled");
+
+                long wait = _CANCEL_CHECK_INTERVAL;
+                if (timeout > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        throw new SocketTimeoutException("Timed out waiting for an identical call");
+                    wait = Math.min(wait, remaining);
+                }
+
+                try {
+                    return flight.get(wait, TimeUnit.NANOSECONDS);
+                }
+                catch (TimeoutException e) {
+                    // check the cancellation and the deadline again
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical call");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw new IOException(cause.getMessage(), cause);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Return the number of GET calls which went to the network
+     * @return number of calls
+     */
+    public long getNetworkCallCount() {
+        return _networkCalls.get();
+    }
+
+    /**
+     * Return the number of GET calls which received the response of an identical call
+     * @return number of calls
+     */
+    public long getCoalescedCallCount() {
+        return _coalescedCalls.get();
+    }
+
+    /**
+     * Buffered copy of a response
+     */
+    private static final class Snapshot {
+
+        private final Response _response;
+        private final MediaType _contentType;
+        private final byte[] _body;
+
+        Snapshot(Response response) throws IOException {
+            try (ResponseBody body = response.body()) {
+                _contentType = body == null ? null : body.contentType();
+                _body = body == null ? new byte[0] : body.bytes();
+            }
+            _response = response;
+        }
+
+        Response toResponse(Request request) {
+            return _response.newBuilder().request(request).body(ResponseBody.create(_contentType, _body)).build();
+        }
+    }
+}
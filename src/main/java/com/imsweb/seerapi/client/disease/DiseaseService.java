@@ -13,6 +13,9 @@ import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
 import retrofit2.http.QueryMap;
+import retrofit2.http.Streaming;
+
+import com.imsweb.seerapi.client.JsonStream;
 
 public interface DiseaseService {
 
@@ -67,6 +70,14 @@ public interface DiseaseService {
     @GET("disease/primary_site")
     Call<List<PrimarySite>> primarySites();
 
+    /**
+     * Return all primary sites and labels as a stream which is read as the sites are requested
+     * @return a stream of PrimarySite objects, which must be closed if not read to the end
+     */
+    @Streaming
+    @GET("disease/primary_site")
+    Call<JsonStream<PrimarySite>> streamPrimarySites();
+
     /**
      * Return a single primary site and label
      * @param primarySite Primary Site O3
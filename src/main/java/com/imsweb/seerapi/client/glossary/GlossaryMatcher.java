@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.glossary;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.imsweb.seerapi.client.SeerApiException;
+import com.imsweb.seerapi.client.glossary.Glossary.Category;
+import com.imsweb.seerapi.client.publishable.PublishableSearch.OutputType;
+import com.imsweb.seerapi.client.shared.KeywordMatch;
+
+/**
+ * Finds the glossary terms in a text without calling the API.  The names and alternate names of the glossary entries are compiled into an
+ * Aho-Corasick automaton, which finds all the terms in a single pass over the text regardless of the number of terms.  Matching is case
+ * insensitive and returns the same information as GlossaryService.match() (the end of a match is exclusive).
+ * <p/>
+ * A matcher is immutable and can be shared between threads.
+ */
+public class GlossaryMatcher {
+
+    // number of entries requested per call when downloading a glossary version
+    private static final int _DOWNLOAD_PAGE_SIZE = 100;
+
+    // the automaton; node 0 is the root and the transitions of each node are sorted by character
+    private final char[][] _transitionChars;
+    private final int[][] _transitionTargets;
+    private final int[] _failure;
+    private final int[] _outputLink;
+    private final int[][] _terms;
+
+    private final List<Term> _allTerms = new ArrayList<>();
+
+    /**
+     * Constructor
+     * @param entries glossary entries; the names and alternate names are used as terms
+     */
+    public GlossaryMatcher(Collection<Glossary> entries) {
+        List<Map<Character, Integer>> transitions = new ArrayList<>();
+        List<List<Integer>> terms = new ArrayList<>();
+        transitions.add(new TreeMap<>());
+        terms.add(new ArrayList<>());
+
+        for (Glossary entry : entries) {
+            Set<Category> categories = EnumSet.noneOf(Category.class);
+            if (entry.getCategories() != null)
+                categories.addAll(entry.getCategories());
+
+            Set<String> keywords = new LinkedHashSet<>();
+            if (entry.getName() != null)
+                keywords.add(entry.getName().trim());
+            if (entry.getAlternateName() != null)
+                for (String alternateName : entry.getAlternateName())
+                    if (alternateName != null)
+                        keywords.add(alternateName.trim());
+
+            for (String keyword : keywords) {
+                if (keyword.isEmpty())
+                    continue;
+
+                int node = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = Character.toLowerCase(keyword.charAt(i));
+                    Integer next = transitions.get(node).get(c);
+                    if (next == null) {
+                        next = transitions.size();
+                        transitions.get(node).put(c, next);
+                        transitions.add(new TreeMap<>());
+                        terms.add(new ArrayList<>());
+                    }
+                    node = next;
+                }
+
+                terms.get(node).add(_allTerms.size());
+                _allTerms.add(new Term(entry.getId(), entry.getName(), keyword, categories));
+            }
+        }
+
+        int size = transitions.size();
+        _transitionChars = new char[size][];
+        _transitionTargets = new int[size][];
+        _terms = new int[size][];
+        for (int node = 0; node < size; node++) {
+            Map<Character, Integer> map = transitions.get(node);
+            _transitionChars[node] = new char[map.size()];
+            _transitionTargets[node] = new int[map.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : map.entrySet()) {
+                _transitionChars[node][i] = transition.getKey();
+                _transitionTargets[node][i] = transition.getValue();
+                i++;
+            }
+            _terms[node] = terms.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // failure links are computed breadth-first, so the links of shallower nodes are always known
+        _failure = new int[size];
+        _outputLink = new int[size];
+        Arrays.fill(_outputLink, -1);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : _transitionTargets[0])
+            queue.add(child);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < _transitionChars[node].length; i++) {
+                char c = _transitionChars[node][i];
+                int child = _transitionTargets[node][i];
+
+                int fallback = _failure[node];
+                while (fallback != 0 && next(fallback, c) < 0)
+                    fallback = _failure[fallback];
+                int target = next(fallback, c);
+                _failure[child] = target >= 0 && target != child ? target : 0;
+                _outputLink[child] = _terms[_failure[child]].length > 0 ? _failure[child] : _outputLink[_failure[child]];
+
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Download all the entries of a glossary version and create a matcher from them
+     * @param service glossary service
+     * @param version glossary version
+     * @return a GlossaryMatcher
+     * @throws IOException if there is an error communicating with the API
+     */
+    public static GlossaryMatcher download(GlossaryService service, String version) throws IOException {
+        List<Glossary> entries = new ArrayList<>();
+
+        GlossarySearch search = new GlossarySearch();
+        search.setOutputType(OutputType.FULL);
+        search.setCount(_DOWNLOAD_PAGE_SIZE);
+        while (true) {
+            search.setOffset(entries.size());
+            GlossarySearchResults results = service.search(version, search.paramMap()).execute().body();
+            if (results == null)
+                throw new SeerApiException("Empty response searching glossary version " + version);
+            if (results.getResults() == null || results.getResults().isEmpty())
+                break;
+
+            entries.addAll(results.getResults());
+            if (results.getTotal() != null && entries.size() >= results.getTotal())
+                break;
+        }
+
+        return new GlossaryMatcher(entries);
+    }
+
+    /**
+     * Return the number of terms (names and alternate names) of the matcher
+     * @return the number of terms
+     */
+    public int getTermCount() {
+        return _allTerms.size();
+    }
+
+    /**
+     * Return all the glossary terms found in a text
+     * @param text text to look up glossary references
+     * @param categories if not null or empty, only return terms of entries in those categories
+     * @param wholeWordsOnly if true, only return terms which are not part of a longer word
+     * @return a set of matches, ordered by position
+     */
+    public Set<KeywordMatch> match(String text, Set<Category> categories, boolean wholeWordsOnly) {
+        if (text == null)
+            return new LinkedHashSet<>();
+
+        List<KeywordMatch> matches = new ArrayList<>();
+        int node = 0;
+        for (int end = 1; end <= text.length(); end++) {
+            char c = Character.toLowerCase(text.charAt(end - 1));
+            while (node != 0 && next(node, c) < 0)
+                node = _failure[node];
+            node = Math.max(0, next(node, c));
+
+            // report the terms ending here, including the shorter terms which are suffixes of the current path
+            for (int output = _terms[node].length > 0 ? node : _outputLink[node]; output >= 0; output = _outputLink[output]) {
+                for (int termIndex : _terms[output]) {
+                    Term term = _allTerms.get(termIndex);
+                    int start = end - term._keyword.length();
+                    if (categories != null && !categories.isEmpty() && Collections.disjoint(categories, term._categories))
+                        continue;
+                    if (wholeWordsOnly && !(isBoundary(text, start - 1) && isBoundary(text, end)))
+                        continue;
+                    matches.add(term.toMatch(start, end));
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparing(KeywordMatch::getStart).thenComparing(KeywordMatch::getEnd, Comparator.reverseOrder()));
+
+        return new LinkedHashSet<>(matches);
+    }
+
+    private int next(int node, char c) {
+        int i = Arrays.binarySearch(_transitionChars[node], c);
+        return i >= 0 ? _transitionTargets[node][i] : -1;
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static final class Term {
+
+        private final String _id;
+        private final String _name;
+        private final String _keyword;
+        private final Set<Category> _categories;
+
+        private Term(String id, String name, String keyword, Set<Category> categories) {
+            _id = id;
+            _name = name;
+            _keyword = keyword;
+            _categories = categories;
+        }
+
+        private KeywordMatch toMatch(int start, int end) {
+            KeywordMatch match = new KeywordMatch();
+            match.setId(_id);
+            match.setName(_name);
+            match.setKeyword(_keyword);
+            match.setCategory(_categories.stream().map(Category::name).collect(Collectors.toCollection(LinkedHashSet::new)));
+            match.setStart(start);
+            match.setEnd(end);
+            return match;
+        }
+    }
+}
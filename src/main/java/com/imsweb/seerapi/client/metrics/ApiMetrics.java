@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.metrics;
+
+/**
+ * Receives the metrics of the calls made by SeerApi.  Endpoints are identified by their method and path template (i.e.
+ * "POST staging/{algorithm}/{version}/stage").  All methods may be called from multiple threads at the same time and should return
+ * quickly.  Implementations can forward the metrics to any monitoring system; InMemoryApiMetrics keeps them in memory.
+ */
+public interface ApiMetrics {
+
+    /**
+     * Called when a call completes
+     * @param endpoint endpoint template
+     * @param statusCode HTTP status code, or 0 if the response did not come from the network (i.e. served from the cache)
+     * @param durationNanos time from the start of the call to the end of the response body
+     * @param requestBytes number of bytes of the request body
+     * @param responseBytes number of bytes of the response body
+     */
+    void callCompleted(String endpoint, int statusCode, long durationNanos, long requestBytes, long responseBytes);
+
+    /**
+     * Called when a call fails with a communication error
+     * @param endpoint endpoint template
+     * @param durationNanos time from the start of the call to the failure
+     */
+    void callFailed(String endpoint, long durationNanos);
+
+    /**
+     * Called when a connection was established for a call
+     * @param endpoint endpoint template
+     * @param dnsNanos time spent resolving the host name, 0 if it was not resolved
+     * @param connectNanos time spent connecting (including TLS)
+     */
+    void connected(String endpoint, long dnsNanos, long connectNanos);
+
+    /**
+     * Called when a response body was converted to an entity
+     * @param endpoint endpoint template
+     * @param durationNanos time spent reading and converting the body
+     */
+    void deserialized(String endpoint, long durationNanos);
+}
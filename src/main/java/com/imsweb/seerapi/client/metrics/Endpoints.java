@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Request;
+import retrofit2.Invocation;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.OPTIONS;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * Determines the endpoint template of a call from the annotations of the service method
+ */
+final class Endpoints {
+
+    private static final Map<Method, String> _TEMPLATES = new ConcurrentHashMap<>();
+
+    private Endpoints() {
+    }
+
+    /**
+     * Return the endpoint template of a request
+     * @param request a request created by Retrofit
+     * @return the template, or the method and path if the request was not created from a service method
+     */
+    static String of(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null)
+            return _TEMPLATES.computeIfAbsent(invocation.method(), m -> of(m.getAnnotations()));
+
+        return request.method() + " " + request.url().encodedPath();
+    }
+
+    /**
+     * Return the endpoint template from the annotations of a service method
+     * @param annotations method annotations
+     * @return the template, or null if there is no HTTP method annotation
+     */
+    static String of(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET)
+                return "GET " + ((GET)annotation).value();
+            if (annotation instanceof POST)
+                return "POST " + ((POST)annotation).value();
+            if (annotation instanceof PUT)
+                return "PUT " + ((PUT)annotation).value();
+            if (annotation instanceof DELETE)
+                return "DELETE " + ((DELETE)annotation).value();
+            if (annotation instanceof PATCH)
+                return "PATCH " + ((PATCH)annotation).value();
+            if (annotation instanceof HEAD)
+                return "HEAD " + ((HEAD)annotation).value();
+            if (annotation instanceof OPTIONS)
+                return "OPTIONS " + ((OPTIONS)annotation).value();
+            if (annotation instanceof HTTP)
+                return ((HTTP)annotation).method() + " " + ((HTTP)annotation).path();
+        }
+
+        return null;
+    }
+}
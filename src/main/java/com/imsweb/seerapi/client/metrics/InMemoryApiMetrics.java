@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ApiMetrics implementation which keeps counters and latency histograms per endpoint in memory.  The metrics can be read at any time
+ * (i.e. by a monitoring endpoint) while calls are being made.
+ */
+public class InMemoryApiMetrics implements ApiMetrics {
+
+    private final Map<String, EndpointMetrics> _endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void callCompleted(String endpoint, int statusCode, long durationNanos, long requestBytes, long responseBytes) {
+        EndpointMetrics metrics = get(endpoint);
+        metrics._calls.increment();
+        metrics._latency.record(durationNanos);
+        metrics._requestBytes.add(requestBytes);
+        metrics._responseBytes.add(responseBytes);
+        metrics._statusCodes.computeIfAbsent(statusCode, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void callFailed(String endpoint, long durationNanos) {
+        get(endpoint)._failures.increment();
+    }
+
+    @Override
+    public void connected(String endpoint, long dnsNanos, long connectNanos) {
+        EndpointMetrics metrics = get(endpoint);
+        metrics._connections.increment();
+        metrics._dnsNanos.add(dnsNanos);
+        metrics._connectNanos.add(connectNanos);
+    }
+
+    @Override
+    public void deserialized(String endpoint, long durationNanos) {
+        EndpointMetrics metrics = get(endpoint);
+        metrics._deserializations.increment();
+        metrics._deserializationNanos.add(durationNanos);
+    }
+
+    private EndpointMetrics get(String endpoint) {
+        return _endpoints.computeIfAbsent(endpoint == null ? "unknown" : endpoint, EndpointMetrics::new);
+    }
+
+    /**
+     * Return the metrics of all endpoints which were called
+     * @return an unmodifiable map of metrics, sorted by endpoint
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableMap(new TreeMap<>(_endpoints));
+    }
+
+    /**
+     * Return the metrics of an endpoint
+     * @param endpoint endpoint template (i.e. "GET staging/{algorithm}/{version}/schema/{id}")
+     * @return the metrics, or null if the endpoint was not called
+     */
+    public EndpointMetrics getEndpoint(String endpoint) {
+        return _endpoints.get(endpoint);
+    }
+
+    /**
+     * Remove all metrics
+     */
+    public void clear() {
+        _endpoints.clear();
+    }
+
+    /**
+     * Metrics of a single endpoint
+     */
+    public static final class EndpointMetrics {
+
+        private final String _endpoint;
+        private final LongAdder _calls = new LongAdder();
+        private final LongAdder _failures = new LongAdder();
+        private final Map<Integer, LongAdder> _statusCodes = new ConcurrentHashMap<>();
+        private final LatencyHistogram _latency = new LatencyHistogram();
+        private final LongAdder _requestBytes = new LongAdder();
+        private final LongAdder _responseBytes = new LongAdder();
+        private final LongAdder _connections = new LongAdder();
+        private final LongAdder _dnsNanos = new LongAdder();
+        private final LongAdder _connectNanos = new LongAdder();
+        private final LongAdder _deserializations = new LongAdder();
+        private final LongAdder _deserializationNanos = new LongAdder();
+
+        private EndpointMetrics(String endpoint) {
+            _endpoint = endpoint;
+        }
+
+        public String getEndpoint() {
+            return _endpoint;
+        }
+
+        /**
+         * Return the number of completed calls (whatever their status)
+         * @return number of calls
+         */
+        public long getCallCount() {
+            return _calls.sum();
+        }
+
+        /**
+         * Return the number of calls which failed with a communication error
+         * @return number of failures
+         */
+        public long getFailureCount() {
+            return _failures.sum();
+        }
+
+        /**
+         * Return the number of completed calls by HTTP status; 0 is used for responses which did not come from the network
+         * @return a map of status code to number of calls
+         */
+        public Map<Integer, Long> getStatusCodeCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            _statusCodes.forEach((code, count) -> counts.put(code, count.sum()));
+            return counts;
+        }
+
+        /**
+         * Return the latency histogram of completed calls
+         * @return the histogram
+         */
+        public LatencyHistogram getLatency() {
+            return _latency;
+        }
+
+        public long getRequestBytes() {
+            return _requestBytes.sum();
+        }
+
+        public long getResponseBytes() {
+            return _responseBytes.sum();
+        }
+
+        /**
+         * Return the number of new connections made
+         * @return number of connections
+         */
+        public long getConnectionCount() {
+            return _connections.sum();
+        }
+
+        public long getDnsTime(TimeUnit unit) {
+            return unit.convert(_dnsNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getConnectTime(TimeUnit unit) {
+            return unit.convert(_connectNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Return the number of response bodies converted to entities
+         * @return number of conversions
+         */
+        public long getDeserializationCount() {
+            return _deserializations.sum();
+        }
+
+        public long getDeserializationTime(TimeUnit unit) {
+            return unit.convert(_deserializationNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Histogram of call latencies with fixed millisecond buckets
+     */
+    public static final class LatencyHistogram {
+
+        // upper bounds (inclusive) of the buckets in milliseconds; the last bucket has no upper bound
+        private static final long[] _BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+        private final LongAdder[] _buckets = new LongAdder[_BOUNDS.length + 1];
+        private final LongAdder _count = new LongAdder();
+        private final LongAdder _totalNanos = new LongAdder();
+        private final AtomicLong _maxNanos = new AtomicLong();
+
+        private LatencyHistogram() {
+            for (int i = 0; i < _buckets.length; i++)
+                _buckets[i] = new LongAdder();
+        }
+
+        private void record(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < _BOUNDS.length && millis > _BOUNDS[bucket])
+                bucket++;
+
+            _buckets[bucket].increment();
+            _count.increment();
+            _totalNanos.add(nanos);
+            _maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return _count.sum();
+        }
+
+        public long getTotal(TimeUnit unit) {
+            return unit.convert(_totalNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getMax(TimeUnit unit) {
+            return unit.convert(_maxNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Return the number of calls in each bucket, keyed by the upper bound of the bucket in milliseconds (Long.MAX_VALUE for the last)
+         * @return a sorted map of bucket counts
+         */
+        public Map<Long, Long> getBuckets() {
+            Map<Long, Long> buckets = new TreeMap<>();
+            for (int i = 0; i < _buckets.length; i++)
+                buckets.put(i < _BOUNDS.length ? _BOUNDS[i] : Long.MAX_VALUE, _buckets[i].sum());
+            return buckets;
+        }
+
+        /**
+         * Return an estimate of a percentile; the upper bound of the bucket containing the percentile
+         * @param percentile percentile between 0 and 100
+         * @return the estimated latency in milliseconds, Long.MAX_VALUE if it is in the last bucket or 0 if there are no calls
+         */
+        public long getPercentile(double percentile) {
+            long count = _count.sum();
+            if (count == 0)
+                return 0;
+
+            long rank = (long)Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < _buckets.length; i++) {
+                seen += _buckets[i].sum();
+                if (seen >= rank)
+                    return i < _BOUNDS.length ? _BOUNDS[i] : Long.MAX_VALUE;
+            }
+
+            return Long.MAX_VALUE;
+        }
+    }
+}
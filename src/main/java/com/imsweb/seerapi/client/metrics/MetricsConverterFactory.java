@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Converter factory which reports the time spent converting response bodies to ApiMetrics.  All conversions are delegated to another
+ * factory.
+ */
+public final class MetricsConverterFactory extends Converter.Factory {
+
+    private final Converter.Factory _delegate;
+    private final ApiMetrics _metrics;
+
+    /**
+     * Constructor
+     * @param delegate factory doing the conversions
+     * @param metrics metrics
+     */
+    public MetricsConverterFactory(Converter.Factory delegate, ApiMetrics metrics) {
+        _delegate = delegate;
+        _metrics = metrics;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        Converter<ResponseBody, ?> converter = _delegate.responseBodyConverter(type, annotations, retrofit);
+        if (converter == null)
+            return null;
+
+        String endpoint = Endpoints.of(annotations);
+
+        return body -> {
+            long start = System.nanoTime();
+            try {
+                return converter.convert(body);
+            }
+            finally {
+                _metrics.deserialized(endpoint, System.nanoTime() - start);
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations, Annotation[] methodAnnotations, Retrofit retrofit) {
+        return _delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, String> stringConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        return _delegate.stringConverter(type, annotations, retrofit);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * OkHttp event listener which reports the timing, status and size of each call to ApiMetrics.  A new listener is created for each call.
+ */
+public final class MetricsEventListener extends EventListener {
+
+    private final ApiMetrics _metrics;
+    private final String _endpoint;
+
+    private long _callStart;
+    private long _dnsStart;
+    private long _dnsNanos;
+    private long _connectStart;
+    private int _statusCode;
+    private long _requestBytes;
+    private long _responseBytes;
+
+    private MetricsEventListener(ApiMetrics metrics, Call call) {
+        _metrics = metrics;
+        _endpoint = Endpoints.of(call.request());
+    }
+
+    /**
+     * Return a factory of listeners reporting to the metrics
+     * @param metrics metrics
+     * @return a listener factory
+     */
+    public static EventListener.Factory factory(ApiMetrics metrics) {
+        return call -> new MetricsEventListener(metrics, call);
+    }
+
+    @Override
+    public void callStart(Call call) {
+        _callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        _dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        _dnsNanos = System.nanoTime() - _dnsStart;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        _connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        _metrics.connected(_endpoint, _dnsNanos, System.nanoTime() - _connectStart);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        _requestBytes += byteCount;
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        _statusCode = response.code();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        _responseBytes += byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        _metrics.callCompleted(_endpoint, _statusCode, System.nanoTime() - _callStart, _requestBytes, _responseBytes);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        _metrics.callFailed(_endpoint, System.nanoTime() - _callStart);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Metrics of the calls made against the SEER API
+ */
+package com.imsweb.seerapi.client.metrics;
@@ -8,6 +8,9 @@ import java.util.List;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
+
+import com.imsweb.seerapi.client.JsonStream;
 
 public interface NaaccrService {
 
@@ -33,6 +36,15 @@ public interface NaaccrService {
     @GET("naaccr/flat/{version}")
     Call<List<NaaccrFieldName>> flatFieldNames(@Path("version") String version);
 
+    /**
+     * Return all the field identifiers and names from a specified NAACCR flat file version as a stream which is read as the fields are requested
+     * @param version NAACCR version
+     * @return a stream of NaaccrFieldName objects, which must be closed if not read to the end
+     */
+    @Streaming
+    @GET("naaccr/flat/{version}")
+    Call<JsonStream<NaaccrFieldName>> streamFlatFieldNames(@Path("version") String version);
+
     /**
      * Return a list of all the field identifiers and names from a specified NAACCR XML version
      * @param version NAACCR version
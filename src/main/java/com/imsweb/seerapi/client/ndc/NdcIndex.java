@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.ndc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup of NDC products and packages by code in any of the formats found in claims data.  Package codes are indexed by their canonical
+ * 11-digit (5-4-2) form and product codes by their canonical 9-digit (5-4) form, so any format is found with a single hash lookup:
+ * <ul>
+ * <li>hyphenated 4-4-2, 5-3-2 and 5-4-1 package codes (and 5-4-2)</li>
+ * <li>hyphenated 4-4 and 5-3 product codes (and 5-4)</li>
+ * <li>11-digit package codes and 9-digit product codes without hyphens</li>
+ * </ul>
+ * The segment lengths of 10-digit package codes and 8-digit product codes without hyphens are unknown; each possible format is looked up
+ * and the code is found only if a single one matches.
+ */
+public class NdcIndex {
+
+    private final Map<String, NdcProduct> _products;
+    private final Map<String, PackageEntry> _packages;
+
+    /**
+     * Constructor
+     * @param products products to index
+     */
+    public NdcIndex(Collection<NdcProduct> products) {
+        _products = new HashMap<>((int)(products.size() / 0.75) + 1);
+        _packages = new HashMap<>((int)(products.size() * 2 / 0.75) + 1);
+
+        for (NdcProduct product : products) {
+            String productCode = normalizeProductCode(product.getNdc());
+            if (productCode != null)
+                _products.put(productCode, product);
+
+            List<NdcPackage> packages = product.getPackages() == null ? Collections.emptyList() : product.getPackages();
+            for (NdcPackage pkg : packages) {
+                String packageCode = normalizePackageCode(pkg.getCode());
+                if (packageCode != null)
+                    _packages.put(packageCode, new PackageEntry(product, pkg));
+            }
+        }
+    }
+
+    /**
+     * Return the number of indexed products
+     * @return the number of products
+     */
+    public int getProductCount() {
+        return _products.size();
+    }
+
+    /**
+     * Return the number of indexed packages
+     * @return the number of packages
+     */
+    public int getPackageCount() {
+        return _packages.size();
+    }
+
+    /**
+     * Return a product by product code or package code
+     * @param code a product or package code in any supported format
+     * @return the product (the product of the package for package codes), or null if not found
+     */
+    public NdcProduct getProduct(String code) {
+        PackageEntry entry = findPackage(code);
+        if (entry != null)
+            return entry._product;
+
+        return find(_products, productCandidates(code));
+    }
+
+    /**
+     * Return a package by package code
+     * @param code a package code in any supported format
+     * @return the package, or null if not found
+     */
+    public NdcPackage getPackage(String code) {
+        PackageEntry entry = findPackage(code);
+        return entry == null ? null : entry._package;
+    }
+
+    private PackageEntry findPackage(String code) {
+        return find(_packages, packageCandidates(code));
+    }
+
+    private static <T> T find(Map<String, T> map, String[] candidates) {
+        T found = null;
+        for (String candidate : candidates) {
+            T value = map.get(candidate);
+            if (value != null) {
+                // more than one match means the format cannot be determined
+                if (found != null)
+                    return null;
+                found = value;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Return the canonical 11-digit form of a package code
+     * @param code a package code
+     * @return the 11-digit code, or null if the format is not supported or is ambiguous (10 digits without hyphens)
+     */
+    public static String normalizePackageCode(String code) {
+        String[] candidates = packageCandidates(code);
+        return candidates.length == 1 ? candidates[0] : null;
+    }
+
+    /**
+     * Return the canonical 9-digit form of a product code
+     * @param code a product code
+     * @return the 9-digit code, or null if the format is not supported or is ambiguous (8 digits without hyphens)
+     */
+    public static String normalizeProductCode(String code) {
+        String[] candidates = productCandidates(code);
+        return candidates.length == 1 ? candidates[0] : null;
+    }
+
+    private static String[] packageCandidates(String code) {
+        String[] segments = segments(code);
+        if (segments.length == 0)
+            return segments;
+
+        if (segments.length == 1) {
+            String s = segments[0];
+            if (s.length() == 11)
+                return new String[] {s};
+            if (s.length() == 10)
+                return new String[] {"0" + s, s.substring(0, 5) + "0" + s.substring(5), s.substring(0, 9) + "0" + s.substring(9)};
+            return new String[0];
+        }
+
+        if (segments.length != 3)
+            return new String[0];
+
+        String labeler = pad(segments[0], 5);
+        String product = pad(segments[1], 4);
+        String pkg = pad(segments[2], 2);
+        if (labeler == null || product == null || pkg == null || segments[0].length() + segments[1].length() + segments[2].length() < 10)
+            return new String[0];
+
+        return new String[] {labeler + product + pkg};
+    }
+
+    private static String[] productCandidates(String code) {
+        String[] segments = segments(code);
+        if (segments.length == 0)
+            return segments;
+
+        if (segments.length == 1) {
+            String s = segments[0];
+            if (s.length() == 9)
+                return new String[] {s};
+            if (s.length() == 8)
+                return new String[] {"0" + s, s.substring(0, 5) + "0" + s.substring(5)};
+            return new String[0];
+        }
+
+        if (segments.length != 2)
+            return new String[0];
+
+        String labeler = pad(segments[0], 5);
+        String product = pad(segments[1], 4);
+        if (labeler == null || product == null || segments[0].length() + segments[1].length() < 8)
+            return new String[0];
+
+        return new String[] {labeler + product};
+    }
+
+    /**
+     * Split a code on hyphens
+     * @param code a code
+     * @return the segments, or an empty array if the code is null or contains anything but digits and hyphens
+     */
+    private static String[] segments(String code) {
+        if (code == null)
+            return new String[0];
+
+        String trimmed = code.trim();
+        if (trimmed.isEmpty())
+            return new String[0];
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if ((c < '0' || c > '9') && c != '-')
+                return new String[0];
+        }
+
+        return trimmed.split("-", -1);
+    }
+
+    /**
+     * Left-pad a segment with at most one zero
+     * @param segment a segment
+     * @param length expected length
+     * @return the padded segment, or null if it is more than one digit short or too long
+     */
+    private static String pad(String segment, int length) {
+        if (segment.length() == length)
+            return segment;
+        if (segment.length() == length - 1)
+            return "0" + segment;
+        return null;
+    }
+
+    private static final class PackageEntry {
+
+        private final NdcProduct _product;
+        private final NdcPackage _package;
+
+        private PackageEntry(NdcProduct product, NdcPackage pkg) {
+            _product = product;
+            _package = pkg;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.ndc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import com.imsweb.seerapi.client.AsyncService;
+import com.imsweb.seerapi.client.SeerApiMapper;
+
+/**
+ * A local copy of the NDC products, so products can be looked up by code without an API call.  The first sync downloads all the products;
+ * the following ones only download the products added, modified or removed since the day of the previous sync (the watermark).  The
+ * products and the watermark are saved as a GZIP-compressed JSON file after each sync and loaded back when the mirror is created, so a
+ * restarted process continues with a delta sync.  Products and packages are looked up through an NdcIndex, which is rebuilt after each
+ * sync, so codes can be given in any of the formats found in claims data.
+ * <p/>
+ * Lookups can be made from any thread, including while a sync is running.
+ */
+public class NdcMirror implements Closeable {
+
+    private final AsyncService<NdcService> _service;
+    private final File _file;
+    private final Clock _clock;
+
+    private volatile Map<String, NdcProduct> _products = new ConcurrentHashMap<>();
+    private volatile NdcIndex _index = new NdcIndex(Collections.emptyList());
+    private volatile LocalDate _watermark;
+    private volatile Exception _lastError;
+    private ScheduledExecutorService _scheduler;
+
+    /**
+     * Constructor; if the file exists, the products and watermark are loaded from it
+     * @param service asynchronous NDC service (i.e. api.async(NdcService.class))
+     * @param file file where the mirror is saved, or null to keep it in memory only
+     * @throws IOException if the existing file cannot be read
+     */
+    public NdcMirror(AsyncService<NdcService> service, File file) throws IOException {
+        this(service, file, Clock.systemUTC());
+    }
+
+    NdcMirror(AsyncService<NdcService> service, File file, Clock clock) throws IOException {
+        _service = service;
+        _file = file;
+        _clock = clock;
+
+        if (file != null && file.exists())
+            load();
+    }
+
+    /**
+     * Return a product by product or package code (i.e. "0002-3227", "0002-3227-30" or "00002322730")
+     * @param code an NDC product or package code in any format supported by NdcIndex
+     * @return the product, or null if there is no (active) product for that code
+     */
+    public NdcProduct getByCode(String code) {
+        return _index.getProduct(code);
+    }
+
+    /**
+     * Return a package by package code
+     * @param code an NDC package code in any format supported by NdcIndex
+     * @return the package, or null if there is no (active) package for that code
+     */
+    public NdcPackage getPackage(String code) {
+        return _index.getPackage(code);
+    }
+
+    /**
+     * Return the index of the products as of the last sync
+     * @return an NdcIndex
+     */
+    public NdcIndex getIndex() {
+        return _index;
+    }
+
+    /**
+     * Return the number of products in the mirror
+     * @return the number of products
+     */
+    public int size() {
+        return _products.size();
+    }
+
+    /**
+     * Return the day of the last sync; the next sync downloads the changes made since that day
+     * @return the watermark, or null if the mirror was never synced
+     */
+    public LocalDate getWatermark() {
+        return _watermark;
+    }
+
+    /**
+     * Return the error of the last scheduled sync
+     * @return an exception, or null if the last scheduled sync succeeded
+     */
+    public Exception getLastError() {
+        return _lastError;
+    }
+
+    /**
+     * Download the changes since the last sync (or all the products for the first sync), then save the mirror
+     * @throws IOException if there is an error communicating with the API or saving the file
+     */
+    public synchronized void sync() throws IOException {
+        // the changes made during the sync are picked up again by the next one; applying them twice is harmless
+        LocalDate started = LocalDate.now(_clock);
+
+        try {
+            if (_watermark == null)
+                fullLoad();
+            else
+                deltaSync(_watermark.toString());
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        _watermark = started;
+        _index = new NdcIndex(_products.values());
+        save();
+    }
+
+    /**
+     * Sync the mirror now and then at a fixed rate, on a background thread.  Errors of scheduled syncs are available from getLastError().
+     * @param period time between two syncs
+     * @param unit unit of the period
+     */
+    public synchronized void schedule(long period, TimeUnit unit) {
+        if (_scheduler != null)
+            throw new IllegalStateException("Syncs are already scheduled");
+
+        _scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ndc-mirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _scheduler.scheduleAtFixedRate(() -> {
+            try {
+                sync();
+                _lastError = null;
+            }
+            catch (IOException | RuntimeException e) {
+                _lastError = e;
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Stop the scheduled syncs
+     */
+    @Override
+    public synchronized void close() {
+        if (_scheduler != null) {
+            _scheduler.shutdownNow();
+            _scheduler = null;
+        }
+    }
+
+    private void fullLoad() {
+        Map<String, NdcProduct> products = new ConcurrentHashMap<>();
+        try (Stream<NdcProduct> stream = new NdcSearchPager(_service, new NdcSearch()).stream()) {
+            stream.forEach(product -> products.put(product.getNdc(), product));
+        }
+
+        // lookups keep using the previous products until the new ones are all loaded
+        _products = products;
+    }
+
+    private void deltaSync(String since) {
+        NdcSearch added = new NdcSearch();
+        added.setAddedSince(since);
+        apply(added);
+
+        NdcSearch modified = new NdcSearch();
+        modified.setModifiedSince(since);
+        apply(modified);
+
+        NdcSearch removed = new NdcSearch();
+        removed.setRemovedSince(since);
+        removed.setIncludeRemoved(true);
+        apply(removed);
+    }
+
+    private void apply(NdcSearch search) {
+        try (Stream<NdcProduct> stream = new NdcSearchPager(_service, search).stream()) {
+            stream.forEach(product -> {
+                if (product.getDateRemoved() != null)
+                    _products.remove(product.getNdc());
+                else
+                    _products.put(product.getNdc(), product);
+            });
+        }
+    }
+
+    private void load() throws IOException {
+        try (InputStream is = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(_file.toPath())))) {
+            Snapshot snapshot = SeerApiMapper.reader(Snapshot.class).readValue(is);
+
+            Map<String, NdcProduct> products = new ConcurrentHashMap<>();
+            for (NdcProduct product : snapshot._products)
+                products.put(product.getNdc(), product);
+            _products = products;
+            _index = new NdcIndex(products.values());
+            _watermark = snapshot._watermark == null ? null : LocalDate.parse(snapshot._watermark);
+        }
+    }
+
+    private void save() throws IOException {
+        if (_file == null)
+            return;
+
+        Snapshot snapshot = new Snapshot();
+        snapshot._watermark = _watermark.toString();
+        snapshot._products = new ArrayList<>(_products.values());
+
+        // write a temporary file first so a failure never leaves a partial mirror behind
+        File tmp = new File(_file.getAbsoluteFile().getParentFile(), _file.getName() + ".tmp");
+        try (OutputStream os = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            SeerApiMapper.writer(Snapshot.class).writeValue(os, snapshot);
+        }
+        Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Content of the mirror file
+     */
+    static final class Snapshot {
+
+        @JsonProperty("watermark")
+        private String _watermark;
+        @JsonProperty("products")
+        private List<NdcProduct> _products = new ArrayList<>();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.ndc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import retrofit2.Response;
+
+import com.imsweb.seerapi.client.AsyncService;
+import com.imsweb.seerapi.client.SeerApiException;
+
+/**
+ * Streams all the products matching an NDC search, one page at a time.  While a page is consumed, the next "prefetch" pages are requested
+ * in parallel.  The number of pages is taken from the X-Total-Count header of the first page; without it (or if it is not a valid count),
+ * pages are requested until one is not full.
+ * <p/>
+ * Pages are queued on the OkHttp dispatcher of the client (use api.async(NdcService.class)), so the maxRequests and maxRequestsPerHost
+ * settings of the client also bound the number of pages requested at the same time.
+ * <p/>
+ * The paging parameters of the search are used as the first page and the page size (the defaults are page 1 and 100 products per page).
+ */
+public class NdcSearchPager {
+
+    // default number of pages requested ahead of the current one
+    public static final int DEFAULT_PREFETCH = 4;
+
+    // default number of products per page
+    public static final int DEFAULT_PER_PAGE = 100;
+
+    private final AsyncService<NdcService> _service;
+    private final Map<String, String> _params;
+    private final int _firstPage;
+    private final int _perPage;
+    private final int _prefetch;
+
+    /**
+     * Constructor
+     * @param service asynchronous NDC service
+     * @param search search parameters
+     */
+    public NdcSearchPager(AsyncService<NdcService> service, NdcSearch search) {
+        this(service, search, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Constructor
+     * @param service asynchronous NDC service
+     * @param search search parameters
+     * @param prefetch number of pages requested ahead of the current one
+     */
+    public NdcSearchPager(AsyncService<NdcService> service, NdcSearch search, int prefetch) {
+        if (prefetch < 1)
+            throw new IllegalArgumentException("Prefetch must be at least 1");
+
+        _service = service;
+        _params = search.paramMap();
+        _firstPage = search.getPage() == null ? 1 : search.getPage();
+        _perPage = search.getPerPage() == null ? DEFAULT_PER_PAGE : search.getPerPage();
+        _prefetch = prefetch;
+    }
+
+    /**
+     * Return a lazy stream of all the matching products.  No call is made before the first product is requested.  The stream should be closed
+     * if it is not read to the end, so the pages being prefetched are cancelled.
+     * @return a sequential Stream of products, in the order of the pages
+     */
+    public Stream<NdcProduct> stream() {
+        PageIterator iterator = new PageIterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+    }
+
+    private PendingPage fetch(int number) {
+        Map<String, String> params = new HashMap<>(_params);
+        params.put("page", String.valueOf(number));
+        params.put("per_page", String.valueOf(_perPage));
+
+        return new PendingPage(number, _service.response(s -> s.search(params)));
+    }
+
+    /**
+     * Return the value of the X-Total-Count header, or null if it is missing or is not a valid count
+     */
+    private static Integer parseTotalCount(String value) {
+        if (value == null)
+            return null;
+
+        try {
+            int count = Integer.parseInt(value.trim());
+            return count < 0 ? null : count;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class PendingPage {
+
+        private final int _number;
+        private final CompletableFuture<Response<List<NdcProduct>>> _response;
+
+        private PendingPage(int number, CompletableFuture<Response<List<NdcProduct>>> response) {
+            _number = number;
+            _response = response;
+        }
+    }
+
+    private static final class Page {
+
+        private final int _number;
+        private final List<NdcProduct> _products;
+        private final Integer _totalCount;
+
+        private Page(int number, List<NdcProduct> products, Integer totalCount) {
+            _number = number;
+            _products = products;
+            _totalCount = totalCount;
+        }
+    }
+
+    private final class PageIterator implements Iterator<NdcProduct> {
+
+        private final Deque<PendingPage> _pending = new ArrayDeque<>();
+
+        private boolean _started;
+        private Iterator<NdcProduct> _current = Collections.emptyIterator();
+        private int _nextPage = _firstPage;
+        private Integer _lastPage;
+        private boolean _done;
+
+        @Override
+        public boolean hasNext() {
+            while (!_current.hasNext()) {
+                if (_done)
+                    return false;
+
+                if (!_started) {
+                    _started = true;
+
+                    // the first page is requested alone since it tells how many pages there are
+                    _pending.add(fetch(_nextPage++));
+                }
+
+                PendingPage pending = _pending.poll();
+                if (pending == null) {
+                    close();
+                    return false;
+                }
+
+                Page page = get(pending);
+
+                // the last page is known from the total count, or is the first one which is not full
+                if (page._totalCount != null && _lastPage == null)
+                    _lastPage = Math.max(_firstPage, (page._totalCount + _perPage - 1) / _perPage);
+                if (page._products.size() < _perPage && (_lastPage == null || page._number < _lastPage))
+                    _lastPage = page._number;
+
+                if (_lastPage != null)
+                    discardAfter(_lastPage);
+                submit();
+
+                _current = page._products.iterator();
+            }
+
+            return true;
+        }
+
+        @Override
+        public NdcProduct next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            return _current.next();
+        }
+
+        private void submit() {
+            while (_pending.size() < _prefetch && (_lastPage == null || _nextPage <= _lastPage))
+                _pending.add(fetch(_nextPage++));
+        }
+
+        private void discardAfter(int lastPage) {
+            int count = Math.max(0, _nextPage - 1 - lastPage);
+            for (int i = 0; i < count && !_pending.isEmpty(); i++)
+                _pending.pollLast()._response.cancel(true);
+            _nextPage = Math.min(_nextPage, lastPage + 1);
+        }
+
+        private Page get(PendingPage pending) {
+            Response<List<NdcProduct>> response;
+            try {
+                response = pending._response.get();
+            }
+            catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new SeerApiException("Interrupted while waiting for NDC search results");
+            }
+            catch (ExecutionException e) {
+                close();
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException)e.getCause();
+                if (e.getCause() instanceof IOException)
+                    throw new UncheckedIOException((IOException)e.getCause());
+                throw new IllegalStateException(e.getCause());
+            }
+
+            List<NdcProduct> products = response.body() == null ? Collections.<NdcProduct>emptyList() : response.body();
+
+            return new Page(pending._number, products, parseTotalCount(response.headers().get("X-Total-Count")));
+        }
+
+        private void close() {
+            _done = true;
+            _current = Collections.emptyIterator();
+            _pending.forEach(p -> p._response.cancel(true));
+            _pending.clear();
+        }
+    }
+}
@@ -10,6 +10,9 @@ import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
 import retrofit2.http.QueryMap;
+import retrofit2.http.Streaming;
+
+import com.imsweb.seerapi.client.JsonStream;
 
 public interface NdcService {
 
@@ -29,4 +32,13 @@ public interface NdcService {
     @GET("ndc")
     Call<List<NdcProduct>> search(@QueryMap Map<String, String> searchParams);
 
+    /**
+     * Search for NDC products, returning a stream which is read as the products are requested
+     * @param searchParams A Map of search parameters.  Use NdcSearch to easily build parameter list.
+     * @return a stream of NdcProduct objects, which must be closed if not read to the end
+     */
+    @Streaming
+    @GET("ndc")
+    Call<JsonStream<NdcProduct>> streamSearch(@QueryMap Map<String, String> searchParams);
+
 }
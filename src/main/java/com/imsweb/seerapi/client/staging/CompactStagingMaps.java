@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.Map;
+
+/**
+ * Input and output storage of the compact StagingData classes (CompactCsStagingData, CompactTnmStagingData and CompactEodStagingData).
+ * The input and output are EnumKeyedMaps which are passed to the StagingData constructor; the typed getters and setters of the compact
+ * classes delegate to this object so they go straight to the array slot of the key.
+ * <p/>
+ * This class is not thread-safe.
+ * @param <I> enum of the input keys
+ * @param <O> enum of the output keys
+ */
+public final class CompactStagingMaps<I extends Enum<I>, O extends Enum<O>> {
+
+    private final EnumKeyedMap<I> _input;
+    private final EnumKeyedMap<O> _output;
+
+    /**
+     * Constructor
+     * @param inputKeys known input keys
+     * @param outputKeys known output keys
+     */
+    public CompactStagingMaps(EnumKeyedMap.Keys<I> inputKeys, EnumKeyedMap.Keys<O> outputKeys) {
+        _input = new EnumKeyedMap<>(inputKeys);
+        _output = new EnumKeyedMap<>(outputKeys);
+    }
+
+    public EnumKeyedMap<I> getInputMap() {
+        return _input;
+    }
+
+    public EnumKeyedMap<O> getOutputMap() {
+        return _output;
+    }
+
+    public String getInput(I key) {
+        return _input.get(key);
+    }
+
+    public void setInput(I key, String value) {
+        _input.put(key, value);
+    }
+
+    public String getOutput(O key) {
+        return _output.get(key);
+    }
+
+    /**
+     * Replace the output; the values are copied since the output map cannot be replaced
+     * @param output output map
+     */
+    public void setOutput(Map<String, String> output) {
+        if (output == _output)
+            return;
+
+        _output.clear();
+        if (output != null)
+            _output.putAll(output);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A compiled form of a StagingTable used for fast matching.  The INPUT cells of all rows are parsed once and every INPUT column is indexed
+ * by exact value and by value interval.  Finding the matching row is a hash or binary search per column followed by an intersection of
+ * the row sets, which does not allocate any objects.
+ * <p/>
+ * Cells which reference the context (i.e. {{year_dx}}) or contain decimal ranges cannot be indexed; rows with those cells are always
+ * considered candidates and are verified against the context.
+ * <p/>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class CompiledStagingTable {
+
+    private final StagingTable _table;
+    private final List<StagingTableRow> _rows;
+    private final List<String> _inputKeys;
+    private final ColumnIndex[] _columns;
+    private final long[] _allRows;
+    private final long[] _verifyRows;
+    private final ThreadLocal<long[][]> _scratch;
+
+    /**
+     * Constructor
+     * @param table table to compile
+     */
+    public CompiledStagingTable(StagingTable table) {
+        _table = table;
+        _rows = StagingTableRow.parse(table);
+
+        List<String> keys = new ArrayList<>();
+        if (table.getColumnDefinitions() != null)
+            for (StagingColumnDefinition column : table.getColumnDefinitions())
+                if (StagingColumnDefinition.ColumnType.INPUT.equals(column.getType()))
+                    keys.add(column.getKey());
+        _inputKeys = Collections.unmodifiableList(keys);
+
+        int words = (_rows.size() + 63) >>> 6;
+        _allRows = new long[words];
+        for (int i = 0; i < _rows.size(); i++)
+            set(_allRows, i);
+
+        _verifyRows = new long[words];
+        _columns = new ColumnIndex[keys.size()];
+        for (int i = 0; i < keys.size(); i++)
+            _columns[i] = new ColumnIndex(keys.get(i), _rows, words, _verifyRows);
+
+        _scratch = ThreadLocal.withInitial(() -> new long[_columns.length][]);
+    }
+
+    /**
+     * Return the table that was compiled
+     * @return the staging table
+     */
+    public StagingTable getTable() {
+        return _table;
+    }
+
+    /**
+     * Return the keys of all INPUT columns
+     * @return an ordered list of keys
+     */
+    public List<String> getInputKeys() {
+        return _inputKeys;
+    }
+
+    /**
+     * Return the number of rows
+     * @return number of rows
+     */
+    public int getRowCount() {
+        return _rows.size();
+    }
+
+    /**
+     * Return the index of the first row which matches the context
+     * @param context context to match; missing values are treated as blank
+     * @return the index of the first matching row, or -1 if no row matches
+     */
+    public int findMatchingRow(Map<String, String> context) {
+        return findMatchingRow(context, null);
+    }
+
+    /**
+     * Return the index of the first row which matches the context
+     * @param context context to match; missing values are treated as blank
+     * @param keysToMatch if not null, only columns with these keys are compared
+     * @return the index of the first matching row, or -1 if no row matches
+     */
+    public int findMatchingRow(Map<String, String> context, Set<String> keysToMatch) {
+        long[][] candidates = _scratch.get();
+
+        int used = 0;
+        for (ColumnIndex column : _columns)
+            if (keysToMatch == null || keysToMatch.contains(column._key))
+                candidates[used++] = column.lookup(context.get(column._key));
+
+        for (int word = 0; word < _allRows.length; word++) {
+            long bits = _allRows[word];
+            for (int i = 0; i < used && bits != 0; i++)
+                bits &= candidates[i][word];
+
+            while (bits != 0) {
+                int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if ((_verifyRows[word] & (1L << row)) == 0 || _rows.get(row).matches(context, keysToMatch))
+                    return row;
+                bits &= bits - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Return the raw cells of a row
+     * @param index row index
+     * @return the raw row
+     */
+    public List<String> getRawRow(int index) {
+        return _table.getRawRows().get(index);
+    }
+
+    /**
+     * Return a parsed row
+     * @param index row index
+     * @return the parsed row
+     */
+    StagingTableRow getRow(int index) {
+        return _rows.get(index);
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static long[] or(long[] first, long[] second) {
+        long[] result = first.clone();
+        for (int i = 0; i < result.length; i++)
+            result[i] |= second[i];
+        return result;
+    }
+
+    /**
+     * Index of a single INPUT column
+     */
+    private static final class ColumnIndex {
+
+        private final String _key;
+
+        // rows matching any value (match-all cells and cells which cannot be indexed)
+        private final long[] _other;
+
+        // rows matching a specific value, including rows with a range containing the value
+        private final Map<String, long[]> _exact = new HashMap<>();
+
+        // range indexes by value length; string ranges only match values with the same length as their bounds
+        private final RangeIndex[] _rangesByLength;
+
+        ColumnIndex(String key, List<StagingTableRow> rows, int words, long[] verifyRows) {
+            _key = key;
+            _other = new long[words];
+
+            Map<String, long[]> exactRows = new HashMap<>();
+            TreeMap<Integer, List<StagingRange>> ranges = new TreeMap<>();
+            Map<Integer, List<Integer>> rangeRows = new HashMap<>();
+
+            for (int row = 0; row < rows.size(); row++) {
+                List<StagingRange> cell = rows.get(row).getInputs().get(key);
+                if (cell == null)
+                    continue;
+
+                for (StagingRange range : cell) {
+                    if (range.isMatchAll())
+                        set(_other, row);
+                    else if (range.isUsesContext() || range.isNumeric()) {
+                        set(_other, row);
+                        set(verifyRows, row);
+                    }
+                    else if (range.getLow().equals(range.getHigh()))
+                        set(exactRows.computeIfAbsent(range.getLow(), k -> new long[words]), row);
+                    else if (range.getLow().length() == range.getHigh().length()) {
+                        int length = range.getLow().length();
+                        rangeRows.computeIfAbsent(length, k -> new ArrayList<>()).add(row);
+                        ranges.computeIfAbsent(length, k -> new ArrayList<>()).add(range);
+                    }
+                    // string ranges with bounds of different lengths can never match
+                }
+            }
+
+            int maxLength = ranges.isEmpty() ? -1 : ranges.lastKey();
+            _rangesByLength = new RangeIndex[maxLength + 1];
+            for (Map.Entry<Integer, List<StagingRange>> entry : ranges.entrySet())
+                _rangesByLength[entry.getKey()] = new RangeIndex(entry.getValue(), rangeRows.get(entry.getKey()), _other);
+
+            for (Map.Entry<String, long[]> entry : exactRows.entrySet())
+                _exact.put(entry.getKey(), or(entry.getValue(), lookupRanges(entry.getKey())));
+        }
+
+        long[] lookup(String value) {
+            if (value == null)
+                value = "";
+
+            long[] rows = _exact.get(value);
+
+            return rows != null ? rows : lookupRanges(value);
+        }
+
+        private long[] lookupRanges(String value) {
+            int length = value.length();
+            if (length < _rangesByLength.length && _rangesByLength[length] != null)
+                return _rangesByLength[length].lookup(value);
+
+            return _other;
+        }
+    }
+
+    /**
+     * Interval index of all the string ranges of a column with the same bound length.  The distinct bounds split the value space into
+     * points and gaps; the set of matching rows is precomputed for each of them.
+     */
+    private static final class RangeIndex {
+
+        private final String[] _points;
+        private final long[][] _atPoint;
+        private final long[][] _between;
+
+        RangeIndex(List<StagingRange> ranges, List<Integer> rows, long[] other) {
+            TreeSet<String> points = new TreeSet<>();
+            for (StagingRange range : ranges) {
+                points.add(range.getLow());
+                points.add(range.getHigh());
+            }
+            _points = points.toArray(new String[0]);
+            _atPoint = new long[_points.length][];
+            _between = new long[_points.length + 1][];
+
+            // identical row sets are shared to limit memory for large tables
+            Map<String, long[]> shared = new HashMap<>();
+
+            _between[0] = other;
+            _between[_points.length] = other;
+            for (int i = 0; i < _points.length; i++) {
+                long[] atPoint = other.clone();
+                long[] between = i == 0 ? null : other.clone();
+
+                for (int r = 0; r < ranges.size(); r++) {
+                    StagingRange range = ranges.get(r);
+                    int row = rows.get(r);
+                    if (range.getLow().compareTo(_points[i]) <= 0 && range.getHigh().compareTo(_points[i]) >= 0)
+                        set(atPoint, row);
+                    if (between != null && range.getLow().compareTo(_points[i - 1]) <= 0 && range.getHigh().compareTo(_points[i]) >= 0)
+                        set(between, row);
+                }
+
+                _atPoint[i] = shared.computeIfAbsent(Arrays.toString(atPoint), k -> atPoint);
+                if (between != null)
+                    _between[i] = shared.computeIfAbsent(Arrays.toString(between), k -> between);
+            }
+        }
+
+        long[] lookup(String value) {
+            int idx = Arrays.binarySearch(_points, value);
+
+            return idx >= 0 ? _atPoint[idx] : _between[-idx - 1];
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map of staging keys to values which stores the values of a fixed set of keys (the names of an enum, as returned by toString()) in an
+ * array indexed by ordinal, with no per-entry objects.  Other keys are stored in a regular map which is only created when needed.  It
+ * behaves as a regular Map of String to String, except that null values are not stored (putting a null value removes the key).
+ * <p/>
+ * This class is not thread-safe.
+ * @param <E> enum of the known keys
+ */
+public final class EnumKeyedMap<E extends Enum<E>> extends AbstractMap<String, String> {
+
+    private final Keys<E> _keys;
+    private final String[] _values;
+    private int _size;
+    private Map<String, String> _extra;
+
+    /**
+     * Constructor
+     * @param keys known keys
+     */
+    public EnumKeyedMap(Keys<E> keys) {
+        _keys = keys;
+        _values = new String[keys._names.length];
+    }
+
+    /**
+     * Return the value of a known key
+     * @param key a key
+     * @return the value, or null if not set
+     */
+    public String get(E key) {
+        return _values[key.ordinal()];
+    }
+
+    /**
+     * Set the value of a known key
+     * @param key a key
+     * @param value a value; null removes the key
+     * @return the previous value
+     */
+    public String put(E key, String value) {
+        return set(key.ordinal(), value);
+    }
+
+    @Override
+    public String get(Object key) {
+        Integer index = _keys._index.get(key);
+        if (index != null)
+            return _values[index];
+
+        return _extra == null ? null : _extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        Integer index = _keys._index.get(key);
+        if (index != null)
+            return set(index, value);
+
+        if (value == null)
+            return remove(key);
+
+        if (_extra == null)
+            _extra = new HashMap<>();
+        String previous = _extra.put(key, value);
+        if (previous == null)
+            _size++;
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        Integer index = _keys._index.get(key);
+        if (index != null)
+            return set(index, null);
+
+        if (_extra == null)
+            return null;
+        String previous = _extra.remove(key);
+        if (previous != null)
+            _size--;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(_values, null);
+        _extra = null;
+        _size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    private String set(int index, String value) {
+        String previous = _values[index];
+        _values[index] = value;
+        if (previous == null && value != null)
+            _size++;
+        else if (previous != null && value == null)
+            _size--;
+        return previous;
+    }
+
+    /**
+     * Iterates over the known keys in ordinal order, then over the other keys
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+        private int _next = -1;
+        private int _current = -1;
+        private Iterator<Map.Entry<String, String>> _extraIterator;
+
+        private EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            do
+                _next++;
+            while (_next < _values.length && _values[_next] == null);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_next < _values.length)
+                return true;
+            if (_extraIterator == null && _extra != null)
+                _extraIterator = _extra.entrySet().iterator();
+            return _extraIterator != null && _extraIterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            if (_next < _values.length) {
+                _current = _next;
+                advance();
+                int index = _current;
+                return new SimpleEntry<String, String>(_keys._names[index], _values[index]) {
+                    @Override
+                    public String setValue(String value) {
+                        if (value == null)
+                            throw new IllegalArgumentException("Null values are not supported");
+                        super.setValue(value);
+                        return set(index, value);
+                    }
+                };
+            }
+
+            _current = -1;
+            return _extraIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (_current >= 0) {
+                if (_values[_current] == null)
+                    throw new IllegalStateException();
+                set(_current, null);
+            }
+            else if (_extraIterator != null) {
+                _extraIterator.remove();
+                _size--;
+            }
+            else
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Return the known keys of an enum; the keys are the values returned by toString()
+     * @param keys enum class
+     * @param <E> enum type
+     * @return a Keys object, which should be shared by all the maps
+     */
+    public static <E extends Enum<E>> Keys<E> keys(Class<E> keys) {
+        return new Keys<>(keys);
+    }
+
+    /**
+     * Immutable lookup of the known keys by name, shared by all the maps using the same enum
+     * @param <E> enum type
+     */
+    public static final class Keys<E extends Enum<E>> {
+
+        private final String[] _names;
+        private final Map<String, Integer> _index = new HashMap<>();
+
+        private Keys(Class<E> type) {
+            E[] constants = type.getEnumConstants();
+            _names = new String[constants.length];
+            for (E constant : constants) {
+                _names[constant.ordinal()] = constant.toString();
+                _index.put(constant.toString(), constant.ordinal());
+            }
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import com.imsweb.seerapi.client.naaccr.NaaccrFlatField;
+import com.imsweb.seerapi.client.naaccr.NaaccrService;
+import com.imsweb.seerapi.client.naaccr.NaaccrSubField;
+
+/**
+ * Stages the records of a NAACCR fixed-width flat file with a StagingEngine and writes them back with the staging outputs.  The staging
+ * inputs are extracted from the columns of the NAACCR items of the schema inputs (StagingSchemaInput.getNaaccrItem()) and the outputs of
+ * staged records are written to the columns of the NAACCR items of the schema outputs; all other columns are copied unchanged.  The
+ * columns come from the flat file layout (NaaccrService.flatField), including sub-fields.
+ * <p/>
+ * The output columns of all the schemas are cleared before the outputs are written, so a record which fails staging (or is staged with
+ * a different schema) never keeps outputs from a previous run.  An output value which does not fit in its column leaves the column blank
+ * and adds an INVALID_OUTPUT error to the StagingData passed to the callback.
+ * <p/>
+ * Records are read, staged by up to "concurrency" threads and written in the same order, with no more than twice the concurrency of
+ * records in memory, so files of any size are processed in constant memory.  Columns are byte positions, which is correct for the ASCII
+ * and ISO-8859-1 content of the coded fields.
+ */
+public class NaaccrFlatStager {
+
+    // default number of records staged at the same time
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final int _BUFFER_SIZE = 64 * 1024;
+
+    private final StagingEngine _engine;
+    private final int _concurrency;
+    private final Map<String, Column> _inputColumns = new LinkedHashMap<>();
+    private final Map<String, Map<String, Column>> _outputColumns = new HashMap<>();
+    private final Set<Column> _allOutputColumns = new LinkedHashSet<>();
+
+    /**
+     * Constructor
+     * @param engine staging engine
+     * @param layout flat file fields of the NAACCR items used by the schemas of the engine (see getNaaccrItems())
+     */
+    public NaaccrFlatStager(StagingEngine engine, Collection<NaaccrFlatField> layout) {
+        this(engine, layout, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructor
+     * @param engine staging engine
+     * @param layout flat file fields of the NAACCR items used by the schemas of the engine (see getNaaccrItems())
+     * @param concurrency maximum number of records staged at the same time
+     */
+    public NaaccrFlatStager(StagingEngine engine, Collection<NaaccrFlatField> layout, int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+
+        _engine = engine;
+        _concurrency = concurrency;
+
+        // sub-fields are only used for items which are not fields of their own
+        Map<Integer, Column> columns = new HashMap<>();
+        for (NaaccrFlatField field : layout)
+            if (field.getItemNum() != null && field.getStart() != null && field.getEnd() != null)
+                columns.put(field.getItemNum(), new Column(field.getItemNum(), field.getStart(), field.getEnd(), field.getAlign(), field.getPadChar()));
+        for (NaaccrFlatField field : layout)
+            if (field.getSubFields() != null)
+                for (NaaccrSubField sub : field.getSubFields())
+                    if (sub.getItem() != null && sub.getStart() != null && sub.getEnd() != null)
+                        columns.putIfAbsent(sub.getItem(), new Column(sub.getItem(), sub.getStart(), sub.getEnd(), sub.getAlign(), sub.getPadChar()));
+
+        for (String schemaId : engine.getSchemaIds()) {
+            StagingSchema schema = engine.getSchema(schemaId);
+            if (schema.getInputs() != null)
+                for (StagingSchemaInput input : schema.getInputs())
+                    if (input.getNaaccrItem() != null && columns.containsKey(input.getNaaccrItem()))
+                        _inputColumns.putIfAbsent(input.getKey(), columns.get(input.getNaaccrItem()));
+
+            Map<String, Column> outputs = new LinkedHashMap<>();
+            if (schema.getOutputs() != null)
+                for (StagingSchemaOutput output : schema.getOutputs())
+                    if (output.getNaaccrItem() != null && columns.containsKey(output.getNaaccrItem()))
+                        outputs.put(output.getKey(), columns.get(output.getNaaccrItem()));
+            _outputColumns.put(schemaId, outputs);
+            _allOutputColumns.addAll(outputs.values());
+        }
+    }
+
+    /**
+     * Return the NAACCR items of the inputs and outputs of all the schemas of an engine
+     * @param engine staging engine
+     * @return a sorted set of NAACCR item numbers
+     */
+    public static Set<Integer> getNaaccrItems(StagingEngine engine) {
+        Set<Integer> items = new TreeSet<>();
+        for (String schemaId : engine.getSchemaIds()) {
+            StagingSchema schema = engine.getSchema(schemaId);
+            if (schema.getInputs() != null)
+                for (StagingSchemaInput input : schema.getInputs())
+                    if (input.getNaaccrItem() != null)
+                        items.add(input.getNaaccrItem());
+            if (schema.getOutputs() != null)
+                for (StagingSchemaOutput output : schema.getOutputs())
+                    if (output.getNaaccrItem() != null)
+                        items.add(output.getNaaccrItem());
+        }
+
+        return items;
+    }
+
+    /**
+     * Download the flat file fields of the NAACCR items used by the schemas of an engine
+     * @param service NAACCR service
+     * @param naaccrVersion NAACCR version (i.e. "18" or "latest")
+     * @param engine staging engine
+     * @return a list of fields, one per item found in the version
+     * @throws IOException if there is an error communicating with the API
+     */
+    public static List<NaaccrFlatField> downloadLayout(NaaccrService service, String naaccrVersion, StagingEngine engine) throws IOException {
+        List<NaaccrFlatField> layout = new ArrayList<>();
+        for (Integer item : getNaaccrItems(engine)) {
+            NaaccrFlatField field = service.flatField(naaccrVersion, item).execute().body();
+            if (field != null)
+                layout.add(field);
+        }
+
+        return layout;
+    }
+
+    public StagingEngine getEngine() {
+        return _engine;
+    }
+
+    public int getConcurrency() {
+        return _concurrency;
+    }
+
+    /**
+     * Stage all the records of a flat file
+     * @param in flat file to read
+     * @param out flat file to write; the output is not closed
+     * @return the number of records
+     * @throws IOException if there is an error reading or writing the records
+     * @throws InterruptedException if the thread is interrupted while waiting for results
+     */
+    public long stage(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        return stage(in, out, null);
+    }
+
+    /**
+     * Stage all the records of a flat file, passing the result of each record to a callback.  The callback is called on the current
+     * thread, in the same order as the records.
+     * @param in flat file to read
+     * @param out flat file to write; the output is not closed
+     * @param callback if not null, called with the result of each record
+     * @return the number of records
+     * @throws IOException if there is an error reading or writing the records
+     * @throws InterruptedException if the thread is interrupted while waiting for results
+     */
+    public long stage(InputStream in, OutputStream out, Consumer<StagingData> callback) throws IOException, InterruptedException {
+        LineReader reader = new LineReader(in);
+        OutputStream os = new BufferedOutputStream(out, _BUFFER_SIZE);
+
+        long count = 0;
+        try (OrderedBoundedExecutor<StagedRecord, IOException> executor = new OrderedBoundedExecutor<>(_concurrency, r -> write(r, os, callback))) {
+            byte[][] line;
+            while ((line = reader.readLine()) != null) {
+                byte[] record = line[0];
+                byte[] terminator = line[1];
+                executor.submitBlocking(() -> stage(record, terminator));
+                count++;
+            }
+            executor.finish();
+        }
+        os.flush();
+
+        return count;
+    }
+
+    /**
+     * Extract the staging inputs of a record
+     * @param record record bytes, without the line terminator
+     * @return a map of input keys to values; blank values are not included
+     */
+    Map<String, String> extractInputs(byte[] record) {
+        Map<String, String> inputs = new HashMap<>();
+        for (Map.Entry<String, Column> entry : _inputColumns.entrySet()) {
+            String value = entry.getValue().read(record);
+            if (value != null)
+                inputs.put(entry.getKey(), value);
+        }
+
+        return inputs;
+    }
+
+    private StagedRecord stage(byte[] record, byte[] terminator) {
+        StagingData data = _engine.stage(extractInputs(record));
+        if (_allOutputColumns.isEmpty())
+            return new StagedRecord(data, record, terminator);
+
+        Map<String, Column> outputs = Collections.emptyMap();
+        if (StagingData.Result.STAGED.equals(data.getResult()) && data.getSchemaId() != null)
+            outputs = _outputColumns.getOrDefault(data.getSchemaId(), outputs);
+
+        // records shorter than the written output columns are padded with spaces
+        int length = record.length;
+        for (Column column : outputs.values())
+            length = Math.max(length, column._end);
+        byte[] staged = Arrays.copyOf(record, length);
+        Arrays.fill(staged, record.length, length, (byte)' ');
+
+        for (Column column : _allOutputColumns)
+            column.clear(staged);
+        for (Map.Entry<String, Column> entry : outputs.entrySet()) {
+            String value = data.getOutput(entry.getKey());
+            Column column = entry.getValue();
+            if (!column.write(staged, value)) {
+                StagingError error = new StagingError(StagingError.Type.INVALID_OUTPUT);
+                error.setKey(entry.getKey());
+                error.setMessage("Value of '" + entry.getKey() + "' (" + value.trim() + ") does not fit in its column (NAACCR item "
+                        + column._item + ", length " + column.length() + ")");
+                data.getErrors().add(error);
+            }
+        }
+
+        return new StagedRecord(data, staged, terminator);
+    }
+
+    private static void write(StagedRecord record, OutputStream os, Consumer<StagingData> callback) throws IOException {
+        os.write(record._bytes);
+        os.write(record._terminator);
+        if (callback != null)
+            callback.accept(record._data);
+    }
+
+    /**
+     * Columns of a NAACCR item in a record; start and end are 1-based and inclusive, like in the flat file layout
+     */
+    private static final class Column {
+
+        private final int _item;
+        private final int _start;
+        private final int _end;
+        private final boolean _rightAligned;
+        private final byte _padChar;
+
+        private Column(int item, int start, int end, String align, String padChar) {
+            _item = item;
+            _start = start;
+            _end = end;
+            _rightAligned = "RIGHT".equalsIgnoreCase(align);
+            _padChar = padChar == null || padChar.isEmpty() ? (byte)' ' : (byte)padChar.charAt(0);
+        }
+
+        /**
+         * Return the trimmed value of the column, or null if it is blank or beyond the end of the record
+         */
+        private String read(byte[] record) {
+            int from = _start - 1;
+            int to = Math.min(_end, record.length);
+            while (from < to && record[from] == ' ')
+                from++;
+            while (to > from && record[to - 1] == ' ')
+                to--;
+
+            return from >= to ? null : new String(record, from, to - from, StandardCharsets.ISO_8859_1);
+        }
+
+        private int length() {
+            return _end - _start + 1;
+        }
+
+        /**
+         * Fill the part of the column which is within the record with spaces
+         */
+        private void clear(byte[] record) {
+            if (_start - 1 < record.length)
+                Arrays.fill(record, _start - 1, Math.min(_end, record.length), (byte)' ');
+        }
+
+        /**
+         * Write a value to the (cleared) column, padded as defined by the layout; blank values leave the column blank
+         * @return false if the value does not fit in the column, in which case it is not written
+         */
+        private boolean write(byte[] record, String value) {
+            byte[] bytes = value == null ? new byte[0] : value.trim().getBytes(StandardCharsets.ISO_8859_1);
+            if (bytes.length == 0)
+                return true;
+            if (bytes.length > length())
+                return false;
+
+            int padding = length() - bytes.length;
+            if (_rightAligned)
+                Arrays.fill(record, _start - 1, _start - 1 + padding, _padChar);
+            System.arraycopy(bytes, 0, record, _start - 1 + (_rightAligned ? padding : 0), bytes.length);
+            return true;
+        }
+    }
+
+    private static final class StagedRecord {
+
+        private final StagingData _data;
+        private final byte[] _bytes;
+        private final byte[] _terminator;
+
+        private StagedRecord(StagingData data, byte[] bytes, byte[] terminator) {
+            _data = data;
+            _bytes = bytes;
+            _terminator = terminator;
+        }
+    }
+
+    /**
+     * Reads the lines of a stream as bytes, keeping the line terminators ("\n" or "\r\n") so they are written back unchanged.  The stream
+     * is read in large blocks which are scanned for the line feeds.
+     */
+    private static final class LineReader {
+
+        private static final byte[] _NONE = new byte[0];
+        private static final byte[] _LF = {'\n'};
+        private static final byte[] _CRLF = {'\r', '\n'};
+
+        private final InputStream _is;
+        private final byte[] _buffer = new byte[_BUFFER_SIZE];
+        private int _position;
+        private int _limit;
+        private boolean _eof;
+
+        // part of a line which spans several blocks
+        private byte[] _partial = new byte[1024];
+
+        private LineReader(InputStream is) {
+            _is = is;
+        }
+
+        /**
+         * Return the next line and its terminator, or null at the end of the stream
+         */
+        private byte[][] readLine() throws IOException {
+            int partialLength = 0;
+            while (true) {
+                if (_position == _limit && !fill()) {
+                    if (partialLength == 0)
+                        return null;
+                    return new byte[][] {Arrays.copyOf(_partial, partialLength), _NONE};
+                }
+
+                int end = _position;
+                while (end < _limit && _buffer[end] != '\n')
+                    end++;
+
+                if (end == _limit) {
+                    partialLength = appendPartial(partialLength, _position, _limit - _position);
+                    _position = _limit;
+                    continue;
+                }
+
+                byte[] line;
+                if (partialLength == 0)
+                    line = Arrays.copyOfRange(_buffer, _position, end);
+                else {
+                    partialLength = appendPartial(partialLength, _position, end - _position);
+                    line = Arrays.copyOf(_partial, partialLength);
+                }
+                _position = end + 1;
+
+                if (line.length > 0 && line[line.length - 1] == '\r')
+                    return new byte[][] {Arrays.copyOf(line, line.length - 1), _CRLF};
+                return new byte[][] {line, _LF};
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (_eof)
+                return false;
+
+            int read = _is.read(_buffer, 0, _buffer.length);
+            while (read == 0)
+                read = _is.read(_buffer, 0, _buffer.length);
+            if (read < 0) {
+                _eof = true;
+                return false;
+            }
+
+            _position = 0;
+            _limit = read;
+            return true;
+        }
+
+        private int appendPartial(int partialLength, int from, int length) {
+            if (partialLength + length > _partial.length)
+                _partial = Arrays.copyOf(_partial, Math.max(_partial.length * 2, partialLength + length));
+            System.arraycopy(_buffer, from, _partial, partialLength, length);
+            return partialLength + length;
+        }
+    }
+}
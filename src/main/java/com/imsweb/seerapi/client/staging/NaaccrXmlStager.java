@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.imsweb.seerapi.client.naaccr.NaaccrService;
+import com.imsweb.seerapi.client.naaccr.NaaccrXmlField;
+
+/**
+ * Stages the tumors of a NAACCR XML file with a StagingEngine.  The file is read with a StAX parser and only the items of the schema
+ * inputs (StagingSchemaInput.getNaaccrXmlId()) are kept; the input of a tumor is made of its items and the items of its patient and of
+ * the NaaccrData element, the items of the most specific element taking precedence.  Inputs which only have a NAACCR item number are
+ * resolved through the NaaccrXmlField definitions, which also tell which values must not be trimmed.
+ * <p/>
+ * Tumors are staged by up to "concurrency" threads and the results are passed to a callback in the same order as the tumors, with no
+ * more than twice the concurrency of tumors in memory, so files of any size are processed in constant memory.  As required by the NAACCR
+ * XML specifications, the items of a patient must come before its tumors.
+ */
+public class NaaccrXmlStager {
+
+    // default number of tumors staged at the same time
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final String _PATIENT = "Patient";
+    private static final String _TUMOR = "Tumor";
+    private static final String _ITEM = "Item";
+    private static final String _NAACCR_ID = "naaccrId";
+
+    private final StagingEngine _engine;
+    private final int _concurrency;
+    private final Map<String, List<String>> _keysById = new HashMap<>();
+    private final Set<String> _untrimmedIds = new HashSet<>();
+
+    /**
+     * Constructor
+     * @param engine staging engine
+     * @param fields NAACCR XML fields used to resolve the item numbers of inputs without a NAACCR XML id; may be empty
+     */
+    public NaaccrXmlStager(StagingEngine engine, Collection<NaaccrXmlField> fields) {
+        this(engine, fields, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructor
+     * @param engine staging engine
+     * @param fields NAACCR XML fields used to resolve the item numbers of inputs without a NAACCR XML id; may be empty
+     * @param concurrency maximum number of tumors staged at the same time
+     */
+    public NaaccrXmlStager(StagingEngine engine, Collection<NaaccrXmlField> fields, int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+
+        _engine = engine;
+        _concurrency = concurrency;
+
+        Map<Integer, String> idsByItem = new HashMap<>();
+        for (NaaccrXmlField field : fields) {
+            if (field.getItemNum() != null && field.getNaaccrId() != null)
+                idsByItem.put(field.getItemNum(), field.getNaaccrId());
+            if ("none".equalsIgnoreCase(field.getTrimType()))
+                _untrimmedIds.add(field.getNaaccrId());
+        }
+
+        Map<String, String> idsByKey = new LinkedHashMap<>();
+        for (String schemaId : engine.getSchemaIds()) {
+            StagingSchema schema = engine.getSchema(schemaId);
+            if (schema.getInputs() != null) {
+                for (StagingSchemaInput input : schema.getInputs()) {
+                    String id = input.getNaaccrXmlId() != null ? input.getNaaccrXmlId() : idsByItem.get(input.getNaaccrItem());
+                    if (id != null)
+                        idsByKey.putIfAbsent(input.getKey(), id);
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : idsByKey.entrySet())
+            _keysById.computeIfAbsent(entry.getValue(), id -> new ArrayList<>()).add(entry.getKey());
+    }
+
+    /**
+     * Return the NAACCR XML ids of the inputs of all the schemas of an engine
+     * @param engine staging engine
+     * @return a sorted set of NAACCR XML ids
+     */
+    public static Set<String> getNaaccrXmlIds(StagingEngine engine) {
+        Set<String> ids = new TreeSet<>();
+        for (String schemaId : engine.getSchemaIds()) {
+            StagingSchema schema = engine.getSchema(schemaId);
+            if (schema.getInputs() != null)
+                for (StagingSchemaInput input : schema.getInputs())
+                    if (input.getNaaccrXmlId() != null)
+                        ids.add(input.getNaaccrXmlId());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Download the NAACCR XML fields of the inputs of all the schemas of an engine
+     * @param service NAACCR service
+     * @param naaccrVersion NAACCR version (i.e. "21" or "latest")
+     * @param engine staging engine
+     * @return a list of fields, one per input item found in the version
+     * @throws IOException if there is an error communicating with the API
+     */
+    public static List<NaaccrXmlField> downloadFields(NaaccrService service, String naaccrVersion, StagingEngine engine) throws IOException {
+        Set<Integer> items = new TreeSet<>();
+        for (String schemaId : engine.getSchemaIds()) {
+            StagingSchema schema = engine.getSchema(schemaId);
+            if (schema.getInputs() != null)
+                for (StagingSchemaInput input : schema.getInputs())
+                    if (input.getNaaccrXmlId() == null && input.getNaaccrItem() != null)
+                        items.add(input.getNaaccrItem());
+        }
+
+        List<NaaccrXmlField> fields = new ArrayList<>();
+        for (String id : getNaaccrXmlIds(engine)) {
+            NaaccrXmlField field = service.xmlField(naaccrVersion, id).execute().body();
+            if (field != null)
+                fields.add(field);
+        }
+        for (Integer item : items) {
+            NaaccrXmlField field = service.xmlField(naaccrVersion, item).execute().body();
+            if (field != null)
+                fields.add(field);
+        }
+
+        return fields;
+    }
+
+    public StagingEngine getEngine() {
+        return _engine;
+    }
+
+    public int getConcurrency() {
+        return _concurrency;
+    }
+
+    /**
+     * Stage all the tumors of a NAACCR XML file, passing the result of each tumor to a callback.  The callback is called on the current
+     * thread, in the same order as the tumors.
+     * @param in NAACCR XML file to read; the input is not closed
+     * @param callback called with the result of each tumor
+     * @return the number of tumors
+     * @throws IOException if there is an error reading or parsing the file
+     * @throws InterruptedException if the thread is interrupted while waiting for results
+     */
+    public long stage(InputStream in, Consumer<TumorResult> callback) throws IOException, InterruptedException {
+        // DTDs and external entities are never needed to read NAACCR XML
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        XMLStreamReader reader;
+        try {
+            reader = factory.createXMLStreamReader(in);
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Unable to read NAACCR XML: " + e.getMessage(), e);
+        }
+
+        long count = 0;
+        try (OrderedBoundedExecutor<TumorResult, RuntimeException> executor = new OrderedBoundedExecutor<>(_concurrency, callback::accept)) {
+            Map<String, String> dataItems = new HashMap<>();
+            Map<String, String> patientItems = new HashMap<>();
+            Map<String, String> tumorItems = new HashMap<>();
+            Map<String, String> current = dataItems;
+            int patientIndex = -1;
+            int tumorIndex = -1;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (_ITEM.equals(name)) {
+                        String id = reader.getAttributeValue(null, _NAACCR_ID);
+                        if (id != null && _keysById.containsKey(id))
+                            current.put(id, reader.getElementText());
+                    }
+                    else if (_PATIENT.equals(name)) {
+                        patientItems.clear();
+                        current = patientItems;
+                        patientIndex++;
+                        tumorIndex = -1;
+                    }
+                    else if (_TUMOR.equals(name)) {
+                        tumorItems.clear();
+                        current = tumorItems;
+                        tumorIndex++;
+                    }
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (_TUMOR.equals(name)) {
+                        Map<String, String> input = toInput(dataItems, patientItems, tumorItems);
+                        int patient = patientIndex;
+                        int tumor = tumorIndex;
+                        executor.submitBlocking(() -> new TumorResult(patient, tumor, _engine.stage(input)));
+                        current = patientItems;
+                        count++;
+                    }
+                    else if (_PATIENT.equals(name))
+                        current = dataItems;
+                }
+            }
+
+            executor.finish();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Unable to read NAACCR XML: " + e.getMessage(), e);
+        }
+        finally {
+            try {
+                reader.close();
+            }
+            catch (XMLStreamException e) {
+                // the underlying stream is not closed by the reader and is owned by the caller
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Build the staging input of a tumor from the items of the NaaccrData, Patient and Tumor elements
+     */
+    private Map<String, String> toInput(Map<String, String> dataItems, Map<String, String> patientItems, Map<String, String> tumorItems) {
+        Map<String, String> values = new HashMap<>(dataItems);
+        values.putAll(patientItems);
+        values.putAll(tumorItems);
+
+        Map<String, String> input = new HashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = _untrimmedIds.contains(entry.getKey()) ? entry.getValue() : entry.getValue().trim();
+            if (value.trim().isEmpty())
+                continue;
+            for (String key : _keysById.get(entry.getKey()))
+                input.put(key, value);
+        }
+
+        return input;
+    }
+
+    /**
+     * Result of staging a single tumor of a NAACCR XML file
+     */
+    public static final class TumorResult {
+
+        private final int _patientIndex;
+        private final int _tumorIndex;
+        private final StagingData _data;
+
+        private TumorResult(int patientIndex, int tumorIndex, StagingData data) {
+            _patientIndex = patientIndex;
+            _tumorIndex = tumorIndex;
+            _data = data;
+        }
+
+        /**
+         * Return the position of the patient in the file
+         * @return a zero-based index
+         */
+        public int getPatientIndex() {
+            return _patientIndex;
+        }
+
+        /**
+         * Return the position of the tumor in its patient
+         * @return a zero-based index
+         */
+        public int getTumorIndex() {
+            return _tumorIndex;
+        }
+
+        /**
+         * Return the staging result; the input contains the staging inputs extracted from the tumor
+         * @return a StagingData object
+         */
+        public StagingData getData() {
+            return _data;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks with bounded concurrency and passes their results to a handler in the order the tasks were submitted.  At most "concurrency"
+ * tasks run at the same time (submitting blocks until one completes) and at most twice the concurrency of results wait for the handler,
+ * so any number of tasks can be streamed in constant memory.  The handler is called on the submitting thread.
+ * <p/>
+ * Tasks are either asynchronous (they return a CompletableFuture, i.e. a call queued on the OkHttp dispatcher) or blocking, in which
+ * case they run on a pool of "concurrency" threads owned by the executor.  This class is not thread-safe.
+ * @param <T> type of the results
+ * @param <E> type of the exception thrown by the handler
+ */
+final class OrderedBoundedExecutor<T, E extends Exception> implements AutoCloseable {
+
+    private final int _concurrency;
+    private final Handler<T, E> _handler;
+    private final Semaphore _permits;
+    private final Deque<CompletableFuture<T>> _pending = new ArrayDeque<>();
+    private ExecutorService _executor;
+
+    /**
+     * Constructor
+     * @param concurrency maximum number of tasks running at the same time
+     * @param handler called with the result of each task
+     */
+    OrderedBoundedExecutor(int concurrency, Handler<T, E> handler) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+
+        _concurrency = concurrency;
+        _handler = handler;
+        _permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Start an asynchronous task once fewer than "concurrency" tasks are running
+     * @param task function which starts the task and returns its future
+     * @throws E if the handler fails for a previous result
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void submit(Supplier<CompletableFuture<T>> task) throws E, InterruptedException {
+        // results are handled as soon as they are available, then the oldest one is waited for if too many are buffered
+        while (!_pending.isEmpty() && _pending.peek().isDone())
+            _handler.accept(get(_pending.poll()));
+        if (_pending.size() >= _concurrency * 2)
+            _handler.accept(get(_pending.poll()));
+
+        _permits.acquire();
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        }
+        catch (RuntimeException | Error e) {
+            _permits.release();
+            throw e;
+        }
+        future.whenComplete((result, error) -> _permits.release());
+        _pending.add(future);
+    }
+
+    /**
+     * Run a blocking task on the threads of the executor once fewer than "concurrency" tasks are running
+     * @param task the task
+     * @throws E if the handler fails for a previous result
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void submitBlocking(Supplier<T> task) throws E, InterruptedException {
+        if (_executor == null)
+            _executor = Executors.newFixedThreadPool(_concurrency);
+
+        ExecutorService executor = _executor;
+        submit(() -> CompletableFuture.supplyAsync(task, executor));
+    }
+
+    /**
+     * Wait for all the submitted tasks and handle their results
+     * @throws E if the handler fails
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void finish() throws E, InterruptedException {
+        while (!_pending.isEmpty())
+            _handler.accept(get(_pending.poll()));
+    }
+
+    /**
+     * Cancel the tasks whose results were not handled and stop the threads
+     */
+    @Override
+    public void close() {
+        _pending.forEach(f -> f.cancel(true));
+        _pending.clear();
+        if (_executor != null)
+            _executor.shutdownNow();
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            // tasks are expected to capture their own errors in their results
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Receives the results of the tasks
+     * @param <T> type of the results
+     * @param <E> type of the exception thrown by the handler
+     */
+    @FunctionalInterface
+    interface Handler<T, E extends Exception> {
+
+        void accept(T result) throws E;
+    }
+}
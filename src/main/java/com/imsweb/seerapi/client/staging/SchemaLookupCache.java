@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache of schema lookups for a single algorithm/version.  Lookups are keyed on the SchemaLookup inputs, so
+ * CsSchemaLookup, TnmSchemaLookup, EodSchemaLookup and plain SchemaLookup instances with the same inputs share entries.  When the cache
+ * is full, the least recently used entry is evicted.
+ */
+public class SchemaLookupCache {
+
+    // default maximum number of cached lookups
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final StagingService _service;
+    private final String _algorithm;
+    private final String _version;
+    private final Map<SchemaLookup, List<StagingSchemaInfo>> _cache;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param service staging service
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     */
+    public SchemaLookupCache(StagingService service, String algorithm, String version) {
+        this(service, algorithm, version, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param service staging service
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     * @param maxSize maximum number of cached lookups
+     */
+    public SchemaLookupCache(StagingService service, String algorithm, String version, int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+
+        _service = service;
+        _algorithm = algorithm;
+        _version = version;
+        _cache = new LinkedHashMap<SchemaLookup, List<StagingSchemaInfo>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SchemaLookup, List<StagingSchemaInfo>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public String getAlgorithm() {
+        return _algorithm;
+    }
+
+    public String getVersion() {
+        return _version;
+    }
+
+    /**
+     * Perform a schema lookup, using the cached result if the same inputs were looked up before
+     * @param lookup a SchemaLookup
+     * @return an unmodifiable list of schemas
+     * @throws IOException if there is an error communicating with the API
+     */
+    public List<StagingSchemaInfo> lookup(SchemaLookup lookup) throws IOException {
+        List<StagingSchemaInfo> schemas;
+        synchronized (_cache) {
+            schemas = _cache.get(lookup);
+        }
+
+        if (schemas != null) {
+            _hits.incrementAndGet();
+            return schemas;
+        }
+
+        _misses.incrementAndGet();
+
+        List<StagingSchemaInfo> result = _service.schemaLookup(_algorithm, _version, lookup.getInputs()).execute().body();
+        schemas = result == null ? Collections.emptyList() : Collections.unmodifiableList(result);
+
+        // the key is copied since lookups are mutable
+        synchronized (_cache) {
+            _cache.put(new SchemaLookup(new HashMap<>(lookup.getInputs())), schemas);
+        }
+
+        return schemas;
+    }
+
+    /**
+     * Return the number of lookups that were found in the cache
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    /**
+     * Return the number of lookups that were not found in the cache
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    /**
+     * Return the fraction of lookups that were found in the cache
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /**
+     * Return the number of cached lookups
+     * @return cache size
+     */
+    public int size() {
+        synchronized (_cache) {
+            return _cache.size();
+        }
+    }
+
+    /**
+     * Remove all cached lookups and reset the statistics
+     */
+    public void clear() {
+        synchronized (_cache) {
+            _cache.clear();
+        }
+        _hits.set(0);
+        _misses.set(0);
+    }
+}
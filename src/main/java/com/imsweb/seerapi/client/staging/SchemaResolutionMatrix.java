@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A precomputed schema resolution for every primary site (C000-C809) and histology (8000-9999) combination of an algorithm/version.  The
+ * matrix is built from the schema selection tables of a StagingEngine and resolves a site/histology pair with an array index.  The result
+ * tells whether a single schema always matches, no schema matches, or the schema depends on discriminators (and which ones).
+ * <p/>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class SchemaResolutionMatrix {
+
+    private static final int _NUM_SITES = 810;
+    private static final int _NUM_HISTOLOGIES = 2000;
+    private static final int _FIRST_HISTOLOGY = 8000;
+
+    // cell values: >= 0 is the index of the single matching schema, -1 is no match and <= -2 is an index into the resolution groups
+    private static final int _NO_MATCH = -1;
+
+    private static final Resolution _NO_MATCH_RESOLUTION = new Resolution(Status.NO_MATCH, Collections.emptyList(), Collections.emptySet());
+    private static final Resolution _NOT_INDEXED_RESOLUTION = new Resolution(Status.NOT_INDEXED, Collections.emptyList(), Collections.emptySet());
+
+    private final int[] _cells;
+    private final Resolution[] _matched;
+    private final Resolution[] _groups;
+
+    public enum Status {
+        // a single schema matches regardless of any discriminators
+        MATCHED,
+
+        // no schema matches the site/histology (or they are invalid)
+        NO_MATCH,
+
+        // the matching schema depends on the value of one or more discriminators
+        NEEDS_DISCRIMINATOR,
+
+        // multiple schemas match and there are no discriminators to tell them apart
+        MULTIPLE_MATCHES,
+
+        // the site or histology is outside of the matrix; a regular schema lookup is required
+        NOT_INDEXED
+    }
+
+    /**
+     * Build the matrix from the schema selection tables of an engine
+     * @param engine staging engine
+     */
+    public SchemaResolutionMatrix(StagingEngine engine) {
+        List<StagingSchema> schemas = new ArrayList<>();
+        for (String id : engine.getSchemaIds())
+            schemas.add(engine.getSchema(id));
+
+        _matched = new Resolution[schemas.size()];
+        for (int i = 0; i < schemas.size(); i++)
+            _matched[i] = new Resolution(Status.MATCHED, Collections.singletonList(schemas.get(i).getId()), Collections.emptySet());
+
+        String[] sites = new String[_NUM_SITES];
+        BitSet validSites = new BitSet(_NUM_SITES);
+        for (int i = 0; i < _NUM_SITES; i++) {
+            sites[i] = String.format("C%03d", i);
+            if (engine.isValid(StagingEngine.PRIMARY_SITE_TABLE, StagingData.PRIMARY_SITE_KEY, Collections.singletonMap(StagingData.PRIMARY_SITE_KEY, sites[i])))
+                validSites.set(i);
+        }
+
+        String[] histologies = new String[_NUM_HISTOLOGIES];
+        BitSet validHistologies = new BitSet(_NUM_HISTOLOGIES);
+        for (int i = 0; i < _NUM_HISTOLOGIES; i++) {
+            histologies[i] = String.valueOf(_FIRST_HISTOLOGY + i);
+            if (engine.isValid(StagingEngine.HISTOLOGY_TABLE, StagingData.HISTOLOGY_KEY, Collections.singletonMap(StagingData.HISTOLOGY_KEY, histologies[i])))
+                validHistologies.set(i);
+        }
+
+        // candidates for each cell, encoded as (schema index * 2) + 1 if the schema matches regardless of discriminators
+        int[] cells = new int[_NUM_SITES * _NUM_HISTOLOGIES];
+        Arrays.fill(cells, _NO_MATCH);
+        List<int[]> candidates = new ArrayList<>();
+        Map<String, Integer> candidateIds = new HashMap<>();
+        List<Set<String>> discriminators = new ArrayList<>();
+
+        byte[] marks = new byte[cells.length];
+        for (int schemaIdx = 0; schemaIdx < schemas.size(); schemaIdx++) {
+            StagingSchema schema = schemas.get(schemaIdx);
+            CompiledStagingTable table = schema.getSchemaSelectionTable() == null ? null : engine.getCompiledTable(schema.getSchemaSelectionTable());
+            if (table == null) {
+                discriminators.add(Collections.emptySet());
+                continue;
+            }
+
+            Set<String> keys = new LinkedHashSet<>(table.getInputKeys());
+            keys.removeAll(StagingData.STANDARD_LOOKUP_KEYS);
+            if (schema.getSchemaDiscriminators() != null)
+                keys.addAll(schema.getSchemaDiscriminators());
+            discriminators.add(keys);
+
+            if (!mark(table, sites, validSites, histologies, validHistologies, marks))
+                continue;
+
+            for (int cell = 0; cell < marks.length; cell++) {
+                if (marks[cell] == 0)
+                    continue;
+
+                int candidate = schemaIdx * 2 + (marks[cell] == 2 ? 1 : 0);
+                if (cells[cell] == _NO_MATCH)
+                    cells[cell] = candidate;
+                else {
+                    int[] existing = cells[cell] >= 0 ? new int[] {cells[cell]} : candidates.get(-cells[cell] - 2);
+                    int[] combined = Arrays.copyOf(existing, existing.length + 1);
+                    combined[existing.length] = candidate;
+                    cells[cell] = -intern(combined, candidates, candidateIds) - 2;
+                }
+                marks[cell] = 0;
+            }
+        }
+
+        // single schemas which depend on discriminators are moved to a group
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] >= 0) {
+                if ((cells[cell] & 1) == 1)
+                    cells[cell] = cells[cell] >> 1;
+                else
+                    cells[cell] = -intern(new int[] {cells[cell]}, candidates, candidateIds) - 2;
+            }
+        }
+
+        _groups = new Resolution[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            List<String> ids = new ArrayList<>();
+            Set<String> keys = new LinkedHashSet<>();
+            for (int candidate : candidates.get(i)) {
+                ids.add(schemas.get(candidate >> 1).getId());
+                if ((candidate & 1) == 0)
+                    keys.addAll(discriminators.get(candidate >> 1));
+            }
+            _groups[i] = new Resolution(keys.isEmpty() ? Status.MULTIPLE_MATCHES : Status.NEEDS_DISCRIMINATOR, Collections.unmodifiableList(ids),
+                    Collections.unmodifiableSet(keys));
+        }
+
+        _cells = cells;
+    }
+
+    /**
+     * Mark all the cells which match a row of the selection table; 1 if the row constrains other columns, 2 if it does not
+     * @return true if any cells were marked
+     */
+    private static boolean mark(CompiledStagingTable table, String[] sites, BitSet validSites, String[] histologies, BitSet validHistologies, byte[] marks) {
+        Map<String, BitSet> siteCache = new HashMap<>();
+        Map<String, BitSet> histologyCache = new HashMap<>();
+
+        boolean marked = false;
+        for (int row = 0; row < table.getRowCount(); row++) {
+            StagingTableRow parsed = table.getRow(row);
+
+            BitSet rowSites = expand(parsed.getInputs().get(StagingData.PRIMARY_SITE_KEY), sites, validSites, siteCache);
+            BitSet rowHistologies = expand(parsed.getInputs().get(StagingData.HISTOLOGY_KEY), histologies, validHistologies, histologyCache);
+            if (rowSites.isEmpty() || rowHistologies.isEmpty())
+                continue;
+
+            boolean unconstrained = true;
+            for (Map.Entry<String, List<StagingRange>> entry : parsed.getInputs().entrySet())
+                if (!StagingData.STANDARD_LOOKUP_KEYS.contains(entry.getKey()) && entry.getValue().stream().noneMatch(StagingRange::isMatchAll))
+                    unconstrained = false;
+
+            byte mark = (byte)(unconstrained ? 2 : 1);
+            for (int site = rowSites.nextSetBit(0); site >= 0; site = rowSites.nextSetBit(site + 1)) {
+                int offset = site * _NUM_HISTOLOGIES;
+                for (int hist = rowHistologies.nextSetBit(0); hist >= 0; hist = rowHistologies.nextSetBit(hist + 1))
+                    if (marks[offset + hist] < mark)
+                        marks[offset + hist] = mark;
+            }
+            marked = true;
+        }
+
+        return marked;
+    }
+
+    /**
+     * Return the set of valid values (by index) contained in the ranges of a cell; a missing column contains all valid values
+     */
+    private static BitSet expand(List<StagingRange> ranges, String[] values, BitSet valid, Map<String, BitSet> cache) {
+        if (ranges == null)
+            return valid;
+
+        // the same cells are repeated across rows of selection tables, so the expansions are cached
+        StringBuilder key = new StringBuilder();
+        for (StagingRange range : ranges)
+            key.append(range.isMatchAll() ? "*" : range.getLow() + "-" + range.getHigh()).append(',');
+
+        return cache.computeIfAbsent(key.toString(), k -> {
+            BitSet result = new BitSet(values.length);
+            for (int i = valid.nextSetBit(0); i >= 0; i = valid.nextSetBit(i + 1))
+                for (StagingRange range : ranges)
+                    if (range.contains(values[i], Collections.emptyMap())) {
+                        result.set(i);
+                        break;
+                    }
+            return result;
+        });
+    }
+
+    private static int intern(int[] candidates, List<int[]> all, Map<String, Integer> ids) {
+        return ids.computeIfAbsent(Arrays.toString(candidates), k -> {
+            all.add(candidates);
+            return all.size() - 1;
+        });
+    }
+
+    /**
+     * Return the index of a primary site in the matrix
+     * @param site primary site
+     * @return index, or -1 if the site is outside of C000-C809
+     */
+    static int siteIndex(String site) {
+        if (site == null || site.length() != 4 || site.charAt(0) != 'C')
+            return -1;
+
+        int value = 0;
+        for (int i = 1; i < 4; i++) {
+            char c = site.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+
+        return value < _NUM_SITES ? value : -1;
+    }
+
+    /**
+     * Return the index of a histology in the matrix
+     * @param hist histology
+     * @return index, or -1 if the histology is outside of 8000-9999
+     */
+    static int histologyIndex(String hist) {
+        if (hist == null || hist.length() != 4)
+            return -1;
+
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = hist.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+
+        return value >= _FIRST_HISTOLOGY ? value - _FIRST_HISTOLOGY : -1;
+    }
+
+    /**
+     * Resolve the schema for a site and histology.  This does not allocate any objects.
+     * @param site primary site
+     * @param hist histology
+     * @return a Resolution
+     */
+    public Resolution resolve(String site, String hist) {
+        int siteIdx = siteIndex(site);
+        int histIdx = histologyIndex(hist);
+        if (siteIdx < 0 || histIdx < 0)
+            return _NOT_INDEXED_RESOLUTION;
+
+        int cell = _cells[siteIdx * _NUM_HISTOLOGIES + histIdx];
+        if (cell == _NO_MATCH)
+            return _NO_MATCH_RESOLUTION;
+
+        return cell >= 0 ? _matched[cell] : _groups[-cell - 2];
+    }
+
+    /**
+     * Return the identifier of the schema for a site and histology, if it can be determined without discriminators
+     * @param site primary site
+     * @param hist histology
+     * @return a schema identifier, or null if there is no single matching schema
+     */
+    public String getSchemaId(String site, String hist) {
+        Resolution resolution = resolve(site, hist);
+
+        return Status.MATCHED.equals(resolution.getStatus()) ? resolution.getSchemaIds().get(0) : null;
+    }
+
+    /**
+     * Result of resolving a site and histology
+     */
+    public static final class Resolution {
+
+        private final Status _status;
+        private final List<String> _schemaIds;
+        private final Set<String> _discriminatorKeys;
+
+        private Resolution(Status status, List<String> schemaIds, Set<String> discriminatorKeys) {
+            _status = status;
+            _schemaIds = schemaIds;
+            _discriminatorKeys = discriminatorKeys;
+        }
+
+        public Status getStatus() {
+            return _status;
+        }
+
+        /**
+         * Return the candidate schemas; for MATCHED this is the single matching schema
+         * @return a list of schema identifiers
+         */
+        public List<String> getSchemaIds() {
+            return _schemaIds;
+        }
+
+        /**
+         * Return the discriminator keys needed to choose between the candidate schemas
+         * @return a set of input keys
+         */
+        public Set<String> getDiscriminatorKeys() {
+            return _discriminatorKeys;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import com.imsweb.seerapi.client.AsyncService;
+import com.imsweb.seerapi.client.SeerApiException;
+
+/**
+ * Stages batches of records using the "stage" API call of a single algorithm/version.  The calls are queued on the OkHttp dispatcher of
+ * the client and share its connection pool; no threads are blocked waiting for responses.  Up to "concurrency" calls are in flight at the
+ * same time, and records are read from the source only as fast as they are staged, so batches of any size can be streamed without holding
+ * them in memory.  A failed call does not stop the batch; the error is captured in the result of that record.
+ * <pre>
+ * new StagingBatch(api.async(StagingService.class), "cs", "02.05.50").stageAll(records, result -&gt; ...);
+ * </pre>
+ */
+public class StagingBatch {
+
+    // default number of concurrent staging calls
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private final AsyncService<StagingService> _service;
+    private final String _algorithm;
+    private final String _version;
+    private final int _concurrency;
+
+    /**
+     * Constructor
+     * @param service asynchronous view of the staging service (SeerApi.async(StagingService.class))
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     */
+    public StagingBatch(AsyncService<StagingService> service, String algorithm, String version) {
+        this(service, algorithm, version, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructor
+     * @param service asynchronous view of the staging service (SeerApi.async(StagingService.class))
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     * @param concurrency maximum number of staging calls made at the same time
+     */
+    public StagingBatch(AsyncService<StagingService> service, String algorithm, String version, int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+
+        _service = service;
+        _algorithm = algorithm;
+        _version = version;
+        _concurrency = concurrency;
+    }
+
+    public String getAlgorithm() {
+        return _algorithm;
+    }
+
+    public String getVersion() {
+        return _version;
+    }
+
+    public int getConcurrency() {
+        return _concurrency;
+    }
+
+    /**
+     * Stage all records
+     * @param records records to stage; only the input of each record is used
+     * @return a list of results in the same order as the records
+     * @throws InterruptedException if the thread is interrupted while waiting for results
+     */
+    public List<BatchResult> stageAll(Iterable<StagingData> records) throws InterruptedException {
+        List<BatchResult> results = new ArrayList<>();
+        stageAll(records, results::add);
+        return results;
+    }
+
+    /**
+     * Stage all records, passing the results to a callback.  The callback is called on the current thread, in the same order as the
+     * records.  No more than twice the concurrency of records are read ahead of the callback.
+     * @param records records to stage; only the input of each record is used
+     * @param callback called with the result of each record
+     * @throws InterruptedException if the thread is interrupted while waiting for results
+     */
+    public void stageAll(Iterable<StagingData> records, Consumer<BatchResult> callback) throws InterruptedException {
+        try (OrderedBoundedExecutor<BatchResult, RuntimeException> executor = new OrderedBoundedExecutor<>(_concurrency, callback::accept)) {
+            int index = 0;
+            for (StagingData record : records) {
+                int recordIndex = index++;
+                executor.submit(() -> stage(recordIndex, record));
+            }
+            executor.finish();
+        }
+    }
+
+    private CompletableFuture<BatchResult> stage(int index, StagingData record) {
+        return _service.call(s -> s.stage(_algorithm, _version, new HashMap<>(record.getInput()))).handle((data, error) -> {
+            if (error != null)
+                return new BatchResult(index, record, null, unwrap(error));
+            if (data == null)
+                return new BatchResult(index, record, null, new SeerApiException("Empty response staging record " + index));
+            return new BatchResult(index, record, data, null);
+        });
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception)cause : new IllegalStateException(cause);
+    }
+
+    /**
+     * Result of staging a single record of a batch
+     */
+    public static final class BatchResult {
+
+        private final int _index;
+        private final StagingData _record;
+        private final StagingData _data;
+        private final Exception _error;
+
+        private BatchResult(int index, StagingData record, StagingData data, Exception error) {
+            _index = index;
+            _record = record;
+            _data = data;
+            _error = error;
+        }
+
+        /**
+         * Return the position of the record in the batch
+         * @return a zero-based index
+         */
+        public int getIndex() {
+            return _index;
+        }
+
+        /**
+         * Return the record that was passed to the batch
+         * @return the original record
+         */
+        public StagingData getRecord() {
+            return _record;
+        }
+
+        /**
+         * Return the staging result
+         * @return the StagingData returned by the API, or null if the call failed
+         */
+        public StagingData getData() {
+            return _data;
+        }
+
+        /**
+         * Return the error which caused the call to fail (i.e. SeerApiException or IOException)
+         * @return an exception, or null if the call succeeded
+         */
+        public Exception getError() {
+            return _error;
+        }
+
+        public boolean isSuccessful() {
+            return _error == null;
+        }
+    }
+}
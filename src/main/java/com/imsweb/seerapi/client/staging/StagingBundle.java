@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import retrofit2.Call;
+
+import com.imsweb.seerapi.client.SeerApiException;
+import com.imsweb.seerapi.client.SeerApiMapper;
+
+/**
+ * A snapshot of all the schemas and tables of a single staging algorithm/version.  A bundle is downloaded once using the StagingService
+ * and saved as a single GZIP-compressed JSON file, which can be loaded on any host to create a StagingEngine without making API calls.
+ */
+@JsonPropertyOrder({"algorithm", "version", "created", "schemas", "tables"})
+public class StagingBundle {
+
+    // default number of concurrent calls made when downloading a bundle
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private String _algorithm;
+    private String _version;
+    private Date _created;
+    private List<StagingSchema> _schemas = new ArrayList<>();
+    private List<StagingTable> _tables = new ArrayList<>();
+
+    /**
+     * Default constructor (required for Jackson)
+     */
+    public StagingBundle() {
+    }
+
+    /**
+     * Constructor
+     * @param algorithm algorithm identifier
+     * @param version version
+     * @param schemas all schemas of the algorithm/version
+     * @param tables all tables of the algorithm/version
+     */
+    public StagingBundle(String algorithm, String version, List<StagingSchema> schemas, List<StagingTable> tables) {
+        setAlgorithm(algorithm);
+        setVersion(version);
+        setCreated(new Date());
+        setSchemas(schemas);
+        setTables(tables);
+    }
+
+    @JsonProperty("algorithm")
+    public String getAlgorithm() {
+        return _algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        _algorithm = algorithm;
+    }
+
+    @JsonProperty("version")
+    public String getVersion() {
+        return _version;
+    }
+
+    public void setVersion(String version) {
+        _version = version;
+    }
+
+    @JsonProperty("created")
+    public Date getCreated() {
+        return _created;
+    }
+
+    public void setCreated(Date created) {
+        _created = created;
+    }
+
+    @JsonProperty("schemas")
+    public List<StagingSchema> getSchemas() {
+        return _schemas;
+    }
+
+    public void setSchemas(List<StagingSchema> schemas) {
+        _schemas = schemas;
+    }
+
+    @JsonProperty("tables")
+    public List<StagingTable> getTables() {
+        return _tables;
+    }
+
+    public void setTables(List<StagingTable> tables) {
+        _tables = tables;
+    }
+
+    /**
+     * Download all schemas and tables of an algorithm/version using the default concurrency
+     * @param service staging service
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     * @return a StagingBundle
+     * @throws IOException if there is an error communicating with the API
+     */
+    public static StagingBundle download(StagingService service, String algorithm, String version) throws IOException {
+        return download(service, algorithm, version, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Download all schemas and tables of an algorithm/version
+     * @param service staging service
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     * @param concurrency maximum number of API calls made at the same time
+     * @return a StagingBundle
+     * @throws IOException if there is an error communicating with the API
+     */
+    public static StagingBundle download(StagingService service, String algorithm, String version, int concurrency) throws IOException {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<StagingSchema>> schemas = new ArrayList<>();
+            for (StagingSchemaInfo info : body(service.schemas(algorithm, version)))
+                schemas.add(executor.submit(() -> body(service.schemaById(algorithm, version, info.getId()))));
+
+            List<Future<StagingTable>> tables = new ArrayList<>();
+            for (StagingTable table : body(service.tables(algorithm, version)))
+                tables.add(executor.submit(() -> body(service.tableById(algorithm, version, table.getId()))));
+
+            return new StagingBundle(algorithm, version, get(schemas), get(tables));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Read a bundle from a file
+     * @param file bundle file
+     * @return a StagingBundle
+     * @throws IOException if there is an error reading the file
+     */
+    public static StagingBundle read(File file) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            return read(is);
+        }
+    }
+
+    /**
+     * Read a bundle from a GZIP-compressed stream; the stream is not closed
+     * @param is input stream
+     * @return a StagingBundle
+     * @throws IOException if there is an error reading the stream
+     */
+    public static StagingBundle read(InputStream is) throws IOException {
+        return SeerApiMapper.reader(StagingBundle.class).without(JsonParser.Feature.AUTO_CLOSE_SOURCE).readValue(new GZIPInputStream(is));
+    }
+
+    /**
+     * Write the bundle to a file
+     * @param file bundle file
+     * @throws IOException if there is an error writing the file
+     */
+    public void write(File file) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(os);
+        }
+    }
+
+    /**
+     * Write the bundle as GZIP-compressed JSON; the stream is not closed
+     * @param os output stream
+     * @throws IOException if there is an error writing the stream
+     */
+    public void write(OutputStream os) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(os);
+        SeerApiMapper.writer(StagingBundle.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(gzip, this);
+        gzip.finish();
+    }
+
+    /**
+     * Execute a call and return the body
+     */
+    private static <T> T body(Call<T> call) throws IOException {
+        T body = call.execute().body();
+        if (body == null)
+            throw new SeerApiException("Empty response from " + call.request().url());
+
+        return body;
+    }
+
+    /**
+     * Wait for all the futures, unwrapping any exceptions
+     */
+    private static <T> List<T> get(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>(futures.size());
+
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SeerApiException("Interrupted while downloading staging bundle", e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException)e.getCause();
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException)e.getCause();
+                throw new SeerApiException(e.getCause());
+            }
+        }
+
+        return results;
+    }
+}
@@ -67,6 +67,16 @@ public class StagingData {
         _input = input;
     }
 
+    /**
+     * Construct with the maps used to store the input and output
+     * @param input input map
+     * @param output output map
+     */
+    protected StagingData(Map<String, String> input, Map<String, String> output) {
+        _input = input;
+        _output = output;
+    }
+
     /**
      * Construct with site/histology
      * @param site primary site
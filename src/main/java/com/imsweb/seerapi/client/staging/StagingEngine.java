@@ -0,0 +1,677 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.imsweb.seerapi.client.staging.StagingData.Result;
+import com.imsweb.seerapi.client.staging.StagingSchema.StagingInputErrorHandler;
+
+/**
+ * Stages data locally using the schema and table definitions of a single algorithm/version.  The definitions can be retrieved from
+ * StagingService (schemaById and tableById).  Staging produces the same StagingData (result, schema, output, errors and path) as the
+ * "stage" API call without making any network calls.
+ * <p/>
+ * Once constructed the engine is immutable and can be shared between threads.
+ */
+public class StagingEngine {
+
+    // table identifiers used to validate site and histology in schema lookups
+    static final String PRIMARY_SITE_TABLE = "primary_site";
+    static final String HISTOLOGY_TABLE = "histology";
+
+    private final Map<String, StagingSchema> _schemas = new LinkedHashMap<>();
+    private final Map<String, StagingTable> _tables = new HashMap<>();
+    private final Map<String, CompiledStagingTable> _compiled = new HashMap<>();
+    private final Set<String> _lookupKeys = new HashSet<>();
+    private final Map<String, Set<String>> _relevantKeys = new ConcurrentHashMap<>();
+    private volatile SchemaResolutionMatrix _matrix;
+
+    /**
+     * Constructor
+     * @param schemas all schemas of an algorithm/version
+     * @param tables all tables of an algorithm/version
+     */
+    public StagingEngine(Collection<StagingSchema> schemas, Collection<StagingTable> tables) {
+        for (StagingSchema schema : schemas)
+            _schemas.put(schema.getId(), schema);
+
+        for (StagingTable table : tables) {
+            _tables.put(table.getId(), table);
+            _compiled.put(table.getId(), new CompiledStagingTable(table));
+        }
+
+        // the keys which can change the result of a schema lookup
+        _lookupKeys.add(StagingData.PRIMARY_SITE_KEY);
+        _lookupKeys.add(StagingData.HISTOLOGY_KEY);
+        for (StagingSchema schema : _schemas.values())
+            if (schema.getSchemaSelectionTable() != null && _compiled.containsKey(schema.getSchemaSelectionTable()))
+                _lookupKeys.addAll(_compiled.get(schema.getSchemaSelectionTable()).getInputKeys());
+    }
+
+    /**
+     * Constructor
+     * @param bundle a downloaded algorithm/version
+     */
+    public StagingEngine(StagingBundle bundle) {
+        this(bundle.getSchemas(), bundle.getTables());
+    }
+
+    /**
+     * Return the algorithm of the loaded schemas
+     * @return algorithm identifier, or null if there are no schemas
+     */
+    public String getAlgorithm() {
+        return _schemas.isEmpty() ? null : _schemas.values().iterator().next().getAlgorithm();
+    }
+
+    /**
+     * Return the version of the loaded schemas
+     * @return version, or null if there are no schemas
+     */
+    public String getVersion() {
+        return _schemas.isEmpty() ? null : _schemas.values().iterator().next().getVersion();
+    }
+
+    /**
+     * Return the identifiers of all loaded schemas
+     * @return a set of schema identifiers
+     */
+    public Set<String> getSchemaIds() {
+        return Collections.unmodifiableSet(_schemas.keySet());
+    }
+
+    /**
+     * Return a schema by identifier
+     * @param id schema identifier
+     * @return a schema, or null if it does not exist
+     */
+    public StagingSchema getSchema(String id) {
+        return _schemas.get(id);
+    }
+
+    /**
+     * Return the identifiers of all loaded tables
+     * @return a set of table identifiers
+     */
+    public Set<String> getTableIds() {
+        return Collections.unmodifiableSet(_tables.keySet());
+    }
+
+    /**
+     * Return a table by identifier
+     * @param id table identifier
+     * @return a table, or null if it does not exist
+     */
+    public StagingTable getTable(String id) {
+        return _tables.get(id);
+    }
+
+    /**
+     * Build the site/histology schema resolution matrix.  Once built, schema lookups which can be resolved from site and histology alone
+     * use the matrix instead of searching the schema selection tables.
+     * @return the resolution matrix
+     */
+    public SchemaResolutionMatrix buildResolutionMatrix() {
+        SchemaResolutionMatrix matrix = _matrix;
+        if (matrix == null) {
+            matrix = new SchemaResolutionMatrix(this);
+            _matrix = matrix;
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Perform a schema lookup.  This is equivalent to StagingService.schemaLookup.
+     * @param lookup a SchemaLookup containing site, histology and any discriminators
+     * @return a list of matching schemas
+     */
+    public List<StagingSchema> lookupSchema(SchemaLookup lookup) {
+        return lookupSchema(lookup.getInputs());
+    }
+
+    /**
+     * Perform a schema lookup.  Only keys with non-blank values are used for matching.
+     * @param inputs a map of key/value pairs containing site, histology and any discriminators
+     * @return a list of matching schemas
+     */
+    public List<StagingSchema> lookupSchema(Map<String, String> inputs) {
+        List<StagingSchema> matches = new ArrayList<>();
+
+        String site = inputs.get(StagingData.PRIMARY_SITE_KEY);
+        String hist = inputs.get(StagingData.HISTOLOGY_KEY);
+
+        // site or histology must be supplied
+        if (isBlank(site) && isBlank(hist))
+            return matches;
+
+        // supplied site and histology must be valid
+        if ((!isBlank(site) && !isValid(PRIMARY_SITE_TABLE, StagingData.PRIMARY_SITE_KEY, inputs))
+                || (!isBlank(hist) && !isValid(HISTOLOGY_TABLE, StagingData.HISTOLOGY_KEY, inputs)))
+            return matches;
+
+        Set<String> keys = inputs.entrySet().stream().filter(e -> !isBlank(e.getValue())).map(Entry::getKey).collect(Collectors.toSet());
+
+        // discriminators are only supported if searching on both site and histology
+        if (!StagingData.STANDARD_LOOKUP_KEYS.containsAll(keys) && (isBlank(site) || isBlank(hist)))
+            return matches;
+
+        // a single matching schema or no match at all does not depend on the discriminators
+        SchemaResolutionMatrix matrix = _matrix;
+        if (matrix != null) {
+            SchemaResolutionMatrix.Resolution resolution = matrix.resolve(site, hist);
+            if (SchemaResolutionMatrix.Status.MATCHED.equals(resolution.getStatus()))
+                matches.add(_schemas.get(resolution.getSchemaIds().get(0)));
+            if (SchemaResolutionMatrix.Status.MATCHED.equals(resolution.getStatus()) || SchemaResolutionMatrix.Status.NO_MATCH.equals(resolution.getStatus()))
+                return matches;
+        }
+
+        for (StagingSchema schema : _schemas.values())
+            if (schema.getSchemaSelectionTable() != null && matchTable(schema.getSchemaSelectionTable(), inputs, keys) != null)
+                matches.add(schema);
+
+        return matches;
+    }
+
+    /**
+     * Stage the passed input.  This is equivalent to StagingService.stage.
+     * @param input a map of key/value pairs containing the input for staging
+     * @return a StagingData object representing the results of the staging process
+     */
+    public StagingData stage(Map<String, String> input) {
+        return stage(new StagingData(new HashMap<>(input)));
+    }
+
+    /**
+     * Stage the passed data.  The result, schema, output, errors and path of the data are replaced.
+     * @param data a StagingData object containing the input for staging
+     * @return the passed StagingData object
+     */
+    public StagingData stage(StagingData data) {
+        return stage(data, null);
+    }
+
+    /**
+     * Stage the passed data, reusing the processing of the schema mappings from a memoizer when possible
+     * @param data a StagingData object containing the input for staging
+     * @param memoizer memoizer, or null to always process the mappings
+     * @return the passed StagingData object
+     */
+    StagingData stage(StagingData data, StagingMemoizer memoizer) {
+        data.setResult(null);
+        data.setSchemaId(null);
+        data.setOutput(new HashMap<>());
+        data.setErrors(new ArrayList<>());
+        data.setPath(new ArrayList<>());
+
+        // both site and histology must be supplied
+        if (isBlank(data.getInput(StagingData.PRIMARY_SITE_KEY)) || isBlank(data.getInput(StagingData.HISTOLOGY_KEY))) {
+            data.setResult(Result.FAILED_MISSING_SITE_OR_HISTOLOGY);
+            return data;
+        }
+
+        List<StagingSchema> schemas = lookupSchema(data.getInput());
+        if (schemas.isEmpty()) {
+            data.setResult(Result.FAILED_NO_MATCHING_SCHEMA);
+            return data;
+        }
+        if (schemas.size() > 1) {
+            data.setResult(Result.FAILED_MULITPLE_MATCHING_SCHEMAS);
+            return data;
+        }
+
+        StagingSchema schema = schemas.get(0);
+        data.setSchemaId(schema.getId());
+
+        Map<String, String> context = createContext(schema, data.getInput());
+
+        // the year of diagnosis must be valid
+        StagingSchemaInput yearInput = findInput(schema, StagingData.YEAR_DX_KEY);
+        if (yearInput != null && yearInput.getTable() != null && !isValid(yearInput.getTable(), yearInput.getKey(), context)) {
+            data.setResult(Result.FAILED_INVALID_YEAR_DX);
+            return data;
+        }
+
+        // validate all inputs
+        boolean failed = false;
+        StagingInputErrorHandler handler = schema.getOnInvalidInput() == null ? StagingInputErrorHandler.CONTINUE : schema.getOnInvalidInput();
+        if (schema.getInputs() != null) {
+            for (StagingSchemaInput input : schema.getInputs()) {
+                if (input.getTable() == null || isValid(input.getTable(), input.getKey(), context))
+                    continue;
+
+                boolean usedForStaging = Boolean.TRUE.equals(input.getUsedForStaging());
+                StagingError error = new StagingError(usedForStaging ? StagingError.Type.INVALID_REQUIRED_INPUT : StagingError.Type.INVALID_NON_REQUIRED_INPUT);
+                error.setKey(input.getKey());
+                error.setTable(input.getTable());
+                error.setMessage("Invalid '" + input.getKey() + "' value (" + nullToBlank(context.get(input.getKey())) + ")");
+                data.getErrors().add(error);
+
+                if (StagingInputErrorHandler.FAIL.equals(handler) || (StagingInputErrorHandler.FAIL_WHEN_USED_FOR_STAGING.equals(handler) && usedForStaging))
+                    failed = true;
+            }
+        }
+        if (failed) {
+            data.setResult(Result.FAILED_INVALID_INPUT);
+            return data;
+        }
+
+        Processed processed = memoizer == null ? process(schema, context) : memoizer.process(schema, context, () -> process(schema, context));
+
+        data.getErrors().addAll(processed.getErrors());
+        data.getPath().addAll(processed.getPath());
+        data.getOutput().putAll(processed.getOutput());
+        data.setResult(Result.STAGED);
+
+        return data;
+    }
+
+    /**
+     * Return the input keys which can change the result of staging a record previously staged with a schema: the schema lookup keys (site,
+     * histology and discriminators), the schema inputs and the keys read by the tables of its mappings, including the tables reached by
+     * JUMP endpoints and the keys referenced in defaults and table cells (i.e. {{year_dx}}).
+     * @param schemaId schema identifier; if null or unknown, only the schema lookup keys are returned
+     * @return an unmodifiable set of keys
+     */
+    public Set<String> getRelevantKeys(String schemaId) {
+        StagingSchema schema = schemaId == null ? null : _schemas.get(schemaId);
+        if (schema == null)
+            return Collections.unmodifiableSet(_lookupKeys);
+
+        return _relevantKeys.computeIfAbsent(schemaId, id -> Collections.unmodifiableSet(collectRelevantKeys(schema)));
+    }
+
+    /**
+     * Return true if an input differs from the input of a previous staging in any of the keys relevant to the previous schema
+     * @param previous result of a previous staging
+     * @param input new input
+     * @return true if the record needs to be staged again
+     */
+    public boolean hasRelevantChanges(StagingData previous, Map<String, String> input) {
+        if (previous.getResult() == null || previous.getInput() == null)
+            return true;
+
+        for (String key : getRelevantKeys(previous.getSchemaId()))
+            if (!Objects.equals(previous.getInput(key), input.get(key)))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Stage an input only if it differs from the input of a previous staging in a relevant key (see getRelevantKeys()).  This is meant
+     * for records which are edited after being staged; editing a key not used by the schema does not require staging again.
+     * @param previous result of a previous staging of the record
+     * @param input new input of the record
+     * @return the previous StagingData (with the previous input) if nothing relevant changed, a new StagingData otherwise
+     */
+    public StagingData restage(StagingData previous, Map<String, String> input) {
+        return hasRelevantChanges(previous, input) ? stage(input) : previous;
+    }
+
+    private Set<String> collectRelevantKeys(StagingSchema schema) {
+        Set<String> keys = new HashSet<>(_lookupKeys);
+
+        if (schema.getInputs() != null) {
+            for (StagingSchemaInput input : schema.getInputs()) {
+                keys.add(input.getKey());
+                StagingRange.addReferences(input.getDefault(), keys);
+            }
+        }
+        if (schema.getOutputs() != null)
+            for (StagingSchemaOutput output : schema.getOutputs())
+                StagingRange.addReferences(output.getDefault(), keys);
+        if (schema.getInitialContext() != null)
+            for (StagingKeyValue keyValue : schema.getInitialContext())
+                StagingRange.addReferences(keyValue.getValue(), keys);
+
+        if (schema.getMappings() != null) {
+            for (StagingMapping mapping : schema.getMappings()) {
+                if (mapping.getInitialContext() != null)
+                    for (StagingKeyValue keyValue : mapping.getInitialContext())
+                        StagingRange.addReferences(keyValue.getValue(), keys);
+
+                List<StagingTablePath> tablePaths = new ArrayList<>();
+                if (mapping.getInclusionTables() != null)
+                    tablePaths.addAll(mapping.getInclusionTables());
+                if (mapping.getExclusionTables() != null)
+                    tablePaths.addAll(mapping.getExclusionTables());
+                if (mapping.getTablePaths() != null)
+                    tablePaths.addAll(mapping.getTablePaths());
+                for (StagingTablePath tablePath : tablePaths)
+                    collectTableKeys(tablePath, tablePath.getId(), keys, new HashSet<>());
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Add the keys read by a table of a table path to a set, following any JUMP endpoints
+     */
+    private void collectTableKeys(StagingTablePath tablePath, String tableId, Set<String> keys, Set<String> visited) {
+        CompiledStagingTable table = _compiled.get(tableId);
+        if (table == null || !visited.add(tableId))
+            return;
+
+        Map<String, String> inputMapping = new HashMap<>();
+        if (tablePath.getInputMapping() != null)
+            for (StagingKeyMapping keyMapping : tablePath.getInputMapping())
+                inputMapping.put(keyMapping.getTo(), keyMapping.getFrom());
+        keys.addAll(inputMapping.values());
+        for (String key : table.getInputKeys())
+            keys.add(inputMapping.getOrDefault(key, key));
+
+        for (int i = 0; i < table.getRowCount(); i++) {
+            for (String cell : table.getRawRow(i))
+                StagingRange.addReferences(cell, keys);
+            for (StagingEndpoint endpoint : table.getRow(i).getEndpoints())
+                if (StagingEndpoint.EndpointType.JUMP.equals(endpoint.getType()))
+                    collectTableKeys(tablePath, endpoint.getValue(), keys, visited);
+        }
+    }
+
+    /**
+     * Build the initial staging context from the input, applying the defaults of any inputs which were not supplied
+     */
+    private Map<String, String> createContext(StagingSchema schema, Map<String, String> input) {
+        Map<String, String> context = new HashMap<>(input);
+
+        if (schema.getInputs() != null)
+            for (StagingSchemaInput schemaInput : schema.getInputs())
+                if (schemaInput.getDefault() != null && isBlank(context.get(schemaInput.getKey())))
+                    context.put(schemaInput.getKey(), StagingRange.translate(schemaInput.getDefault(), context));
+
+        return context;
+    }
+
+    /**
+     * Process all mappings of a schema, returning the errors, path and output
+     */
+    private Processed process(StagingSchema schema, Map<String, String> context) {
+        Processed processed = new Processed();
+
+        process(schema, context, processed._errors, processed._path);
+
+        if (schema.getOutputs() != null)
+            for (StagingSchemaOutput output : schema.getOutputs())
+                processed._output.put(output.getKey(), context.get(output.getKey()));
+
+        return processed;
+    }
+
+    /**
+     * Process all mappings of a schema, updating the context
+     */
+    private void process(StagingSchema schema, Map<String, String> context, List<StagingError> errors, List<String> path) {
+        // all outputs start with their default value
+        if (schema.getOutputs() != null)
+            for (StagingSchemaOutput output : schema.getOutputs())
+                context.put(output.getKey(), output.getDefault() == null ? "" : StagingRange.translate(output.getDefault(), context));
+
+        if (schema.getInitialContext() != null)
+            for (StagingKeyValue keyValue : schema.getInitialContext())
+                context.put(keyValue.getKey(), StagingRange.translate(keyValue.getValue(), context));
+
+        if (schema.getMappings() != null) {
+            for (StagingMapping mapping : schema.getMappings()) {
+                if (!isMappingInvolved(mapping, context))
+                    continue;
+
+                if (mapping.getInitialContext() != null)
+                    for (StagingKeyValue keyValue : mapping.getInitialContext())
+                        context.put(keyValue.getKey(), StagingRange.translate(keyValue.getValue(), context));
+
+                if (mapping.getTablePaths() != null)
+                    for (StagingTablePath tablePath : mapping.getTablePaths())
+                        if (!processTable(tablePath, tablePath.getId(), context, errors, path, new HashSet<>()))
+                            break;
+            }
+        }
+
+        // validate the outputs
+        if (schema.getOutputs() != null) {
+            for (StagingSchemaOutput output : schema.getOutputs()) {
+                if (output.getTable() != null && !isValid(output.getTable(), output.getKey(), context)) {
+                    StagingError error = new StagingError(StagingError.Type.INVALID_OUTPUT);
+                    error.setKey(output.getKey());
+                    error.setTable(output.getTable());
+                    error.setMessage("Invalid '" + output.getKey() + "' value (" + nullToBlank(context.get(output.getKey())) + ")");
+                    errors.add(error);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if all the inclusion tables and none of the exclusion tables of the mapping match the context
+     */
+    private boolean isMappingInvolved(StagingMapping mapping, Map<String, String> context) {
+        if (mapping.getInclusionTables() != null)
+            for (StagingTablePath tablePath : mapping.getInclusionTables())
+                if (matchTable(tablePath.getId(), mapInput(tablePath, context), null) == null)
+                    return false;
+
+        if (mapping.getExclusionTables() != null)
+            for (StagingTablePath tablePath : mapping.getExclusionTables())
+                if (matchTable(tablePath.getId(), mapInput(tablePath, context), null) != null)
+                    return false;
+
+        return true;
+    }
+
+    /**
+     * Process a single table of a table path, following any JUMP endpoints.
+     * @return true if processing of the mapping should continue, false if it should stop
+     */
+    private boolean processTable(StagingTablePath tablePath, String tableId, Map<String, String> context, List<StagingError> errors, List<String> path,
+            Set<String> visited) {
+        StagingTable table = _tables.get(tableId);
+        if (table == null) {
+            StagingError error = new StagingError(StagingError.Type.UNKNOWN_TABLE);
+            error.setTable(tableId);
+            error.setMessage("Unable to find table '" + tableId + "'");
+            errors.add(error);
+            return false;
+        }
+
+        if (!visited.add(tableId)) {
+            StagingError error = new StagingError(StagingError.Type.INFINITE_LOOP);
+            error.setTable(tableId);
+            error.setMessage("Infinite loop detected processing table '" + tableId + "'");
+            errors.add(error);
+            return false;
+        }
+
+        path.add(tableId);
+
+        // validate the input mappings before matching
+        if (tablePath.getInputMapping() != null) {
+            for (StagingKeyMapping keyMapping : tablePath.getInputMapping()) {
+                if (!context.containsKey(keyMapping.getFrom())) {
+                    StagingError error = new StagingError(StagingError.Type.UNKNOWN_INPUT_MAPPING);
+                    error.setTable(tableId);
+                    error.setKey(keyMapping.getFrom());
+                    error.setMessage("Input mapping '" + keyMapping.getFrom() + "' does not exist for table '" + tableId + "'");
+                    errors.add(error);
+                    return false;
+                }
+            }
+        }
+
+        Map<String, String> tableContext = mapInput(tablePath, context);
+        StagingTableRow row = matchTable(tableId, tableContext, null);
+
+        if (row == null) {
+            List<String> columns = _compiled.get(tableId).getInputKeys();
+            StagingError error = new StagingError(StagingError.Type.MATCH_NOT_FOUND);
+            error.setTable(tableId);
+            error.setColumns(new ArrayList<>(columns));
+            error.setMessage("Match not found in table '" + tableId + "' (" + columns.stream().map(c -> c + ": \"" + nullToBlank(tableContext.get(c)) + "\"")
+                    .collect(Collectors.joining(", ")) + ")");
+            errors.add(error);
+            return false;
+        }
+
+        boolean continueProcessing = true;
+        for (StagingEndpoint endpoint : row.getEndpoints()) {
+            switch (endpoint.getType()) {
+                case VALUE:
+                    context.put(mapOutput(tablePath, endpoint.getResultKey()), StagingRange.translate(endpoint.getValue() == null ? "" : endpoint.getValue(), context));
+                    break;
+                case JUMP:
+                    if (!processTable(tablePath, endpoint.getValue(), context, errors, path, visited))
+                        continueProcessing = false;
+                    break;
+                case ERROR:
+                    StagingError error = new StagingError(StagingError.Type.STAGING_ERROR);
+                    error.setTable(tableId);
+                    error.setKey(mapOutput(tablePath, endpoint.getResultKey()));
+                    error.setColumns(new ArrayList<>(row.getInputs().keySet()));
+                    error.setMessage(isBlank(endpoint.getValue()) ? "Matching resulted in an error in table '" + tableId + "' for column '" + endpoint.getResultKey() + "'"
+                            : endpoint.getValue());
+                    errors.add(error);
+                    continueProcessing = false;
+                    break;
+                case STOP:
+                    continueProcessing = false;
+                    break;
+                case MATCH:
+                default:
+                    break;
+            }
+        }
+
+        return continueProcessing;
+    }
+
+    /**
+     * Return the context to use for matching a table, applying the input mappings of the table path
+     */
+    private static Map<String, String> mapInput(StagingTablePath tablePath, Map<String, String> context) {
+        if (tablePath.getInputMapping() == null || tablePath.getInputMapping().isEmpty())
+            return context;
+
+        Map<String, String> mapped = new HashMap<>(context);
+        for (StagingKeyMapping keyMapping : tablePath.getInputMapping())
+            mapped.put(keyMapping.getTo(), context.get(keyMapping.getFrom()));
+
+        return mapped;
+    }
+
+    /**
+     * Return the context key a table result key is written to, applying the output mappings of the table path
+     */
+    private static String mapOutput(StagingTablePath tablePath, String resultKey) {
+        if (tablePath.getOutputMapping() != null)
+            for (StagingKeyMapping keyMapping : tablePath.getOutputMapping())
+                if (keyMapping.getFrom().equals(resultKey))
+                    return keyMapping.getTo();
+
+        return resultKey;
+    }
+
+    /**
+     * Return a compiled table by identifier
+     * @param id table identifier
+     * @return a compiled table, or null if it does not exist
+     */
+    CompiledStagingTable getCompiledTable(String id) {
+        return _compiled.get(id);
+    }
+
+    /**
+     * Return the first row of a table which matches the context
+     * @param tableId table identifier
+     * @param context context to match
+     * @param keysToMatch if not null, only columns with these keys are compared
+     * @return the first matching row, or null if the table does not exist or there is no match
+     */
+    StagingTableRow matchTable(String tableId, Map<String, String> context, Set<String> keysToMatch) {
+        CompiledStagingTable table = _compiled.get(tableId);
+        if (table == null)
+            return null;
+
+        int row = table.findMatchingRow(context, keysToMatch);
+
+        return row < 0 ? null : table.getRow(row);
+    }
+
+    /**
+     * Return true if the value of the key is contained in the table; if the table does not exist, the value is considered valid
+     */
+    boolean isValid(String tableId, String key, Map<String, String> context) {
+        return !_compiled.containsKey(tableId) || matchTable(tableId, context, Collections.singleton(key)) != null;
+    }
+
+    private static StagingSchemaInput findInput(StagingSchema schema, String key) {
+        if (schema.getInputs() != null)
+            for (StagingSchemaInput input : schema.getInputs())
+                if (key.equals(input.getKey()))
+                    return input;
+
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static String nullToBlank(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Result of processing the mappings of a schema
+     */
+    static final class Processed {
+
+        private final List<StagingError> _errors = new ArrayList<>();
+        private final List<String> _path = new ArrayList<>();
+        private final Map<String, String> _output = new LinkedHashMap<>();
+
+        List<StagingError> getErrors() {
+            return _errors;
+        }
+
+        List<String> getPath() {
+            return _path;
+        }
+
+        Map<String, String> getOutput() {
+            return _output;
+        }
+
+        /**
+         * Return a copy which shares no mutable objects with this one
+         */
+        Processed copy() {
+            Processed copy = new Processed();
+            for (StagingError error : _errors) {
+                StagingError errorCopy = new StagingError(error.getType());
+                errorCopy.setTable(error.getTable());
+                errorCopy.setColumns(error.getColumns() == null ? null : new ArrayList<>(error.getColumns()));
+                errorCopy.setKey(error.getKey());
+                errorCopy.setMessage(error.getMessage());
+                copy._errors.add(errorCopy);
+            }
+            copy._path.addAll(_path);
+            copy._output.putAll(_output);
+            return copy;
+        }
+    }
+}
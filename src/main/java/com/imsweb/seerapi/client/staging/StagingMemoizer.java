@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.imsweb.seerapi.client.staging.StagingEngine.Processed;
+
+/**
+ * Stages data with a StagingEngine, processing each distinct combination of relevant inputs only once.  The relevant inputs of a schema
+ * are the ones returned by StagingEngine.getRelevantKeys(): the lookup keys, all the schema inputs (not only the ones flagged as used for
+ * staging) and every key read by the tables of the mappings.  Records which resolve to the same schema and have the same values for those
+ * inputs (after defaults are applied) get a copy of the same output, errors and path.  Schema lookup and input validation are still
+ * done for every record, so the result is always the same as StagingEngine.stage().  When the cache is full, the least recently used
+ * entry is evicted.
+ * <p/>
+ * A memoizer is thread-safe; records with the same inputs staged at the same time may both be processed.
+ */
+public class StagingMemoizer {
+
+    // default maximum number of cached results
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final StagingEngine _engine;
+    private final Map<List<String>, Processed> _cache;
+    private final Map<String, List<String>> _relevantKeys = new ConcurrentHashMap<>();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param engine staging engine
+     */
+    public StagingMemoizer(StagingEngine engine) {
+        this(engine, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param engine staging engine
+     * @param maxSize maximum number of cached results
+     */
+    public StagingMemoizer(StagingEngine engine, int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+
+        _engine = engine;
+        _cache = new LinkedHashMap<List<String>, Processed>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Processed> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public StagingEngine getEngine() {
+        return _engine;
+    }
+
+    /**
+     * Stage the passed input.  This is equivalent to StagingEngine.stage.
+     * @param input a map of key/value pairs containing the input for staging
+     * @return a StagingData object representing the results of the staging process
+     */
+    public StagingData stage(Map<String, String> input) {
+        return stage(new StagingData(new HashMap<>(input)));
+    }
+
+    /**
+     * Stage the passed data.  The result, schema, output, errors and path of the data are replaced.
+     * @param data a StagingData object containing the input for staging
+     * @return the passed StagingData object
+     */
+    public StagingData stage(StagingData data) {
+        return _engine.stage(data, this);
+    }
+
+    /**
+     * Return the processed mappings for a schema and context, from the cache if possible
+     */
+    Processed process(StagingSchema schema, Map<String, String> context, Supplier<Processed> processor) {
+        // the key is built before processing since processing updates the context
+        List<String> key = key(schema, context);
+
+        Processed processed;
+        synchronized (_cache) {
+            processed = _cache.get(key);
+        }
+
+        if (processed != null) {
+            _hits.incrementAndGet();
+            return processed.copy();
+        }
+
+        _misses.incrementAndGet();
+
+        processed = processor.get();
+        synchronized (_cache) {
+            _cache.put(key, processed);
+        }
+
+        return processed.copy();
+    }
+
+    private List<String> key(StagingSchema schema, Map<String, String> context) {
+        List<String> keys = _relevantKeys.computeIfAbsent(schema.getId(), id -> new ArrayList<>(new TreeSet<>(_engine.getRelevantKeys(id))));
+
+        // values are in the order of the sorted keys so the key does not depend on the other inputs of the record
+        List<String> key = new ArrayList<>(keys.size() + 1);
+        key.add(schema.getId());
+        for (String k : keys)
+            key.add(context.get(k));
+
+        return key;
+    }
+
+    /**
+     * Return the number of records whose result was found in the cache
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    /**
+     * Return the number of records which had to be processed
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    /**
+     * Return the fraction of records whose result was found in the cache
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /**
+     * Return the number of cached results
+     * @return cache size
+     */
+    public int size() {
+        synchronized (_cache) {
+            return _cache.size();
+        }
+    }
+
+    /**
+     * Remove all cached results and reset the statistics
+     */
+    public void clear() {
+        synchronized (_cache) {
+            _cache.clear();
+        }
+        _hits.set(0);
+        _misses.set(0);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single range of values parsed from an INPUT cell of a staging table.  A cell like "001-050,999" is parsed into two ranges.
+ */
+final class StagingRange {
+
+    // a cell with this value matches any input
+    static final String MATCH_ALL = "*";
+
+    // pattern for references to other context values, i.e. {{year_dx}}
+    private static final Pattern _CONTEXT_REFERENCE = Pattern.compile("\\{\\{(.+?)}}");
+
+    private static final StagingRange _MATCH_ALL_RANGE = new StagingRange(null, null, true);
+
+    private final String _low;
+    private final String _high;
+    private final boolean _matchAll;
+    private final boolean _usesContext;
+    private final boolean _numeric;
+    private final double _lowNumber;
+    private final double _highNumber;
+
+    private StagingRange(String low, String high, boolean matchAll) {
+        _low = low;
+        _high = high;
+        _matchAll = matchAll;
+        _usesContext = !matchAll && (usesContext(low) || usesContext(high));
+
+        // ranges with decimal bounds (i.e. "0.1-99.9") are compared numerically; all others are compared as same-length strings
+        Double lowNumber = _usesContext || matchAll || low.equals(high) ? null : parseDecimal(low);
+        Double highNumber = lowNumber == null ? null : parseDecimal(high);
+        _numeric = lowNumber != null && highNumber != null && (low.contains(".") || high.contains("."));
+        _lowNumber = _numeric ? lowNumber : 0;
+        _highNumber = _numeric ? highNumber : 0;
+    }
+
+    /**
+     * Parse a raw table cell into a list of ranges
+     * @param cell raw cell value
+     * @return a list of ranges; a null or blank cell results in a single range matching only blank values
+     */
+    static List<StagingRange> parse(String cell) {
+        if (cell == null)
+            return Collections.singletonList(new StagingRange("", "", false));
+
+        if (MATCH_ALL.equals(cell.trim()))
+            return Collections.singletonList(_MATCH_ALL_RANGE);
+
+        List<StagingRange> ranges = new ArrayList<>();
+
+        // the negative limit makes sure empty entries are not discarded
+        for (String part : cell.split(",", -1)) {
+            String[] bounds = part.split("-");
+            if (bounds.length == 2 && !bounds[0].trim().isEmpty() && !bounds[1].trim().isEmpty())
+                ranges.add(new StagingRange(bounds[0].trim(), bounds[1].trim(), false));
+            else
+                ranges.add(new StagingRange(part.trim(), part.trim(), false));
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Replace all context references (i.e. {{key}}) in the passed value with the values from the context
+     * @param value value to translate
+     * @param context current context
+     * @return the translated value
+     */
+    static String translate(String value, Map<String, String> context) {
+        if (value == null || !usesContext(value))
+            return value;
+
+        StringBuffer buffer = new StringBuffer();
+        Matcher matcher = _CONTEXT_REFERENCE.matcher(value);
+        while (matcher.find()) {
+            String replacement = context.get(matcher.group(1).trim());
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement == null ? "" : replacement));
+        }
+        matcher.appendTail(buffer);
+
+        return buffer.toString();
+    }
+
+    /**
+     * Add the context keys referenced by a value (i.e. year_dx for "2004-{{year_dx}}") to a set
+     * @param value value
+     * @param keys set the keys are added to
+     */
+    static void addReferences(String value, Set<String> keys) {
+        if (!usesContext(value))
+            return;
+
+        Matcher matcher = _CONTEXT_REFERENCE.matcher(value);
+        while (matcher.find())
+            keys.add(matcher.group(1).trim());
+    }
+
+    /**
+     * Return true if the value contains a reference to a context key
+     * @param value value
+     * @return true if the value references the context
+     */
+    static boolean usesContext(String value) {
+        return value != null && value.contains("{{");
+    }
+
+    private static Double parseDecimal(String value) {
+        try {
+            return Double.valueOf(value);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    String getLow() {
+        return _low;
+    }
+
+    String getHigh() {
+        return _high;
+    }
+
+    boolean isMatchAll() {
+        return _matchAll;
+    }
+
+    boolean isUsesContext() {
+        return _usesContext;
+    }
+
+    boolean isNumeric() {
+        return _numeric;
+    }
+
+    double getLowNumber() {
+        return _lowNumber;
+    }
+
+    double getHighNumber() {
+        return _highNumber;
+    }
+
+    /**
+     * Return true if the value is contained in the range
+     * @param value value to test; null is treated as blank
+     * @param context the current context, used to resolve references
+     * @return true if the value is in the range
+     */
+    boolean contains(String value, Map<String, String> context) {
+        if (_matchAll)
+            return true;
+
+        if (value == null)
+            value = "";
+
+        String low = _low;
+        String high = _high;
+        if (_usesContext) {
+            low = translate(low, context);
+            high = translate(high, context);
+        }
+
+        if (low.equals(high))
+            return value.equals(low);
+
+        if (_numeric) {
+            Double number = parseDecimal(value);
+            return number != null && number >= _lowNumber && number <= _highNumber;
+        }
+
+        // string ranges only match values with the same length as the bounds
+        if (value.length() != low.length() || value.length() != high.length())
+            return false;
+
+        return low.compareTo(value) <= 0 && high.compareTo(value) >= 0;
+    }
+
+    @Override
+    public String toString() {
+        if (_matchAll)
+            return MATCH_ALL;
+
+        return _low.equals(_high) ? _low : _low + "-" + _high;
+    }
+}
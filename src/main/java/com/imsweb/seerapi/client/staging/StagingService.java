@@ -13,7 +13,9 @@ import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
+import com.imsweb.seerapi.client.JsonStream;
 import com.imsweb.seerapi.client.glossary.Glossary.Category;
 import com.imsweb.seerapi.client.shared.KeywordMatch;
 
@@ -125,6 +127,16 @@ public interface StagingService {
     @GET("staging/{algorithm}/{version}/tables")
     Call<List<StagingTable>> tables(@Path("algorithm") String algorithm, @Path("version") String version, @Query("q") String query, @Query("unused") Boolean unusedOnly);
 
+    /**
+     * Return all the tables of a version as a stream which is read as the tables are requested
+     * @param algorithm an algorithm identifier
+     * @param version a version
+     * @return a stream of staging tables, which must be closed if not read to the end
+     */
+    @Streaming
+    @GET("staging/{algorithm}/{version}/tables")
+    Call<JsonStream<StagingTable>> streamTables(@Path("algorithm") String algorithm, @Path("version") String version);
+
     /**
      * Return a single table definition by table identifier
      * @param algorithm an algorithm identifier
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.imsweb.seerapi.client.staging.StagingColumnDefinition.ColumnType;
+import com.imsweb.seerapi.client.staging.StagingEndpoint.EndpointType;
+
+/**
+ * A row of a staging table whose INPUT cells have been parsed into ranges and whose ENDPOINT cells have been parsed into endpoints.
+ */
+final class StagingTableRow {
+
+    private final Map<String, List<StagingRange>> _inputs;
+    private final List<StagingEndpoint> _endpoints;
+
+    private StagingTableRow(Map<String, List<StagingRange>> inputs, List<StagingEndpoint> endpoints) {
+        _inputs = inputs;
+        _endpoints = endpoints;
+    }
+
+    /**
+     * Parse all the raw rows of a table
+     * @param table staging table
+     * @return a list of parsed rows, in the same order as the raw rows
+     */
+    static List<StagingTableRow> parse(StagingTable table) {
+        List<StagingColumnDefinition> columns = table.getColumnDefinitions() == null ? Collections.emptyList() : table.getColumnDefinitions();
+        List<List<String>> rawRows = table.getRawRows() == null ? Collections.emptyList() : table.getRawRows();
+
+        List<StagingTableRow> rows = new ArrayList<>(rawRows.size());
+        for (List<String> rawRow : rawRows) {
+            Map<String, List<StagingRange>> inputs = new LinkedHashMap<>();
+            List<StagingEndpoint> endpoints = new ArrayList<>();
+
+            for (int i = 0; i < columns.size(); i++) {
+                StagingColumnDefinition column = columns.get(i);
+                String cell = i < rawRow.size() ? rawRow.get(i) : null;
+
+                if (ColumnType.INPUT.equals(column.getType()))
+                    inputs.put(column.getKey(), StagingRange.parse(cell));
+                else if (ColumnType.ENDPOINT.equals(column.getType()))
+                    endpoints.add(parseEndpoint(cell, column.getKey()));
+            }
+
+            rows.add(new StagingTableRow(inputs, endpoints));
+        }
+
+        return rows;
+    }
+
+    /**
+     * Parse an endpoint cell, i.e. "VALUE:T1", "JUMP:table_id", "MATCH", "STOP" or "ERROR:message"
+     * @param cell raw cell value
+     * @param resultKey key of the endpoint column
+     * @return a StagingEndpoint
+     */
+    static StagingEndpoint parseEndpoint(String cell, String resultKey) {
+        StagingEndpoint endpoint;
+
+        if (cell == null || cell.trim().isEmpty())
+            endpoint = new StagingEndpoint(EndpointType.VALUE, "");
+        else {
+            int idx = cell.indexOf(':');
+            String type = (idx < 0 ? cell : cell.substring(0, idx)).trim().toUpperCase(Locale.US);
+            String value = idx < 0 ? null : cell.substring(idx + 1).trim();
+
+            try {
+                endpoint = new StagingEndpoint(EndpointType.valueOf(type), value);
+            }
+            catch (IllegalArgumentException e) {
+                // cells without a recognized prefix are treated as plain values
+                endpoint = new StagingEndpoint(EndpointType.VALUE, cell.trim());
+            }
+        }
+
+        endpoint.setResultKey(resultKey);
+
+        return endpoint;
+    }
+
+    Map<String, List<StagingRange>> getInputs() {
+        return _inputs;
+    }
+
+    List<StagingEndpoint> getEndpoints() {
+        return _endpoints;
+    }
+
+    /**
+     * Return true if the row matches the context
+     * @param context context to match
+     * @param keysToMatch if not null, only columns with these keys are compared
+     * @return true if all compared columns match
+     */
+    boolean matches(Map<String, String> context, Set<String> keysToMatch) {
+        for (Entry<String, List<StagingRange>> entry : _inputs.entrySet()) {
+            if (keysToMatch != null && !keysToMatch.contains(entry.getKey()))
+                continue;
+
+            String value = context.get(entry.getKey());
+
+            boolean matched = false;
+            for (StagingRange range : entry.getValue()) {
+                if (range.contains(value, context)) {
+                    matched = true;
+                    break;
+                }
+            }
+
+            if (!matched)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging.cs;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import com.imsweb.seerapi.client.staging.CompactStagingMaps;
+import com.imsweb.seerapi.client.staging.EnumKeyedMap;
+
+/**
+ * CsStagingData which stores the input and output in arrays indexed by the CsInput and CsOutput keys instead of hash maps, to reduce
+ * the memory used by large numbers of records.  Keys which are not part of the enums are still supported.  The JSON representation is the
+ * same as CsStagingData.
+ */
+@JsonIgnoreProperties({"_input", "_output"})
+public class CompactCsStagingData extends CsStagingData {
+
+    private static final EnumKeyedMap.Keys<CsInput> _INPUT_KEYS = EnumKeyedMap.keys(CsInput.class);
+    private static final EnumKeyedMap.Keys<CsOutput> _OUTPUT_KEYS = EnumKeyedMap.keys(CsOutput.class);
+
+    @JsonIgnore
+    private final CompactStagingMaps<CsInput, CsOutput> _maps;
+
+    /**
+     * Default constructor
+     */
+    public CompactCsStagingData() {
+        this(new CompactStagingMaps<>(_INPUT_KEYS, _OUTPUT_KEYS));
+    }
+
+    /**
+     * Construct with site and histology
+     * @param site primary site
+     * @param hist histology
+     */
+    public CompactCsStagingData(String site, String hist) {
+        this();
+
+        setInput(CsInput.PRIMARY_SITE, site);
+        setInput(CsInput.HISTOLOGY, hist);
+    }
+
+    private CompactCsStagingData(CompactStagingMaps<CsInput, CsOutput> maps) {
+        super(maps.getInputMap(), maps.getOutputMap());
+
+        _maps = maps;
+    }
+
+    @Override
+    public String getInput(CsInput key) {
+        return _maps.getInput(key);
+    }
+
+    @Override
+    public void setInput(CsInput key, String value) {
+        _maps.setInput(key, value);
+    }
+
+    @Override
+    public String getOutput(CsOutput key) {
+        return _maps.getOutput(key);
+    }
+
+    /**
+     * Replace the output; the values are copied since the output map of this object cannot be replaced
+     * @param output output map
+     */
+    @Override
+    public void setOutput(Map<String, String> output) {
+        _maps.setOutput(output);
+    }
+}
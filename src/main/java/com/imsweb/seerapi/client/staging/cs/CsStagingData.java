@@ -3,6 +3,8 @@
  */
 package com.imsweb.seerapi.client.staging.cs;
 
+import java.util.Map;
+
 import com.imsweb.seerapi.client.staging.StagingData;
 
 public class CsStagingData extends StagingData {
@@ -135,6 +137,15 @@ public class CsStagingData extends StagingData {
         super();
     }
 
+    /**
+     * Construct with the maps used to store the input and output
+     * @param input input map
+     * @param output output map
+     */
+    protected CsStagingData(Map<String, String> input, Map<String, String> output) {
+        super(input, output);
+    }
+
     /**
      * Construct with site and histology
      * @param site primary site
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging.eod;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import com.imsweb.seerapi.client.staging.CompactStagingMaps;
+import com.imsweb.seerapi.client.staging.EnumKeyedMap;
+
+/**
+ * EodStagingData which stores the input and output in arrays indexed by the EodInput and EodOutput keys instead of hash maps, to reduce
+ * the memory used by large numbers of records.  Keys which are not part of the enums are still supported.  The JSON representation is the
+ * same as EodStagingData.
+ */
+@JsonIgnoreProperties({"_input", "_output"})
+public class CompactEodStagingData extends EodStagingData {
+
+    private static final EnumKeyedMap.Keys<EodInput> _INPUT_KEYS = EnumKeyedMap.keys(EodInput.class);
+    private static final EnumKeyedMap.Keys<EodOutput> _OUTPUT_KEYS = EnumKeyedMap.keys(EodOutput.class);
+
+    @JsonIgnore
+    private final CompactStagingMaps<EodInput, EodOutput> _maps;
+
+    /**
+     * Default constructor
+     */
+    public CompactEodStagingData() {
+        this(new CompactStagingMaps<>(_INPUT_KEYS, _OUTPUT_KEYS));
+    }
+
+    /**
+     * Construct with site and histology
+     * @param site primary site
+     * @param hist histology
+     */
+    public CompactEodStagingData(String site, String hist) {
+        this();
+
+        setInput(EodInput.PRIMARY_SITE, site);
+        setInput(EodInput.HISTOLOGY, hist);
+    }
+
+    private CompactEodStagingData(CompactStagingMaps<EodInput, EodOutput> maps) {
+        super(maps.getInputMap(), maps.getOutputMap());
+
+        _maps = maps;
+    }
+
+    @Override
+    public String getInput(EodInput key) {
+        return _maps.getInput(key);
+    }
+
+    @Override
+    public void setInput(EodInput key, String value) {
+        _maps.setInput(key, value);
+    }
+
+    @Override
+    public String getOutput(EodOutput key) {
+        return _maps.getOutput(key);
+    }
+
+    /**
+     * Replace the output; the values are copied since the output map of this object cannot be replaced
+     * @param output output map
+     */
+    @Override
+    public void setOutput(Map<String, String> output) {
+        _maps.setOutput(output);
+    }
+}
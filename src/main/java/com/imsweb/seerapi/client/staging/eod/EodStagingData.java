@@ -3,6 +3,8 @@
  */
 package com.imsweb.seerapi.client.staging.eod;
 
+import java.util.Map;
+
 import com.imsweb.seerapi.client.staging.StagingData;
 
 public class EodStagingData extends StagingData {
@@ -14,6 +16,15 @@ public class EodStagingData extends StagingData {
         super();
     }
 
+    /**
+     * Construct with the maps used to store the input and output
+     * @param input input map
+     * @param output output map
+     */
+    protected EodStagingData(Map<String, String> input, Map<String, String> output) {
+        super(input, output);
+    }
+
     /**
      * Construct with site and histology
      * @param site primary site
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging.tnm;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import com.imsweb.seerapi.client.staging.CompactStagingMaps;
+import com.imsweb.seerapi.client.staging.EnumKeyedMap;
+
+/**
+ * TnmStagingData which stores the input and output in arrays indexed by the TnmInput and TnmOutput keys instead of hash maps, to reduce
+ * the memory used by large numbers of records.  Keys which are not part of the enums are still supported.  The JSON representation is the
+ * same as TnmStagingData.
+ */
+@JsonIgnoreProperties({"_input", "_output"})
+public class CompactTnmStagingData extends TnmStagingData {
+
+    private static final EnumKeyedMap.Keys<TnmInput> _INPUT_KEYS = EnumKeyedMap.keys(TnmInput.class);
+    private static final EnumKeyedMap.Keys<TnmOutput> _OUTPUT_KEYS = EnumKeyedMap.keys(TnmOutput.class);
+
+    @JsonIgnore
+    private final CompactStagingMaps<TnmInput, TnmOutput> _maps;
+
+    /**
+     * Default constructor
+     */
+    public CompactTnmStagingData() {
+        this(new CompactStagingMaps<>(_INPUT_KEYS, _OUTPUT_KEYS));
+    }
+
+    /**
+     * Construct with site and histology
+     * @param site primary site
+     * @param hist histology
+     */
+    public CompactTnmStagingData(String site, String hist) {
+        this();
+
+        setInput(TnmInput.PRIMARY_SITE, site);
+        setInput(TnmInput.HISTOLOGY, hist);
+    }
+
+    private CompactTnmStagingData(CompactStagingMaps<TnmInput, TnmOutput> maps) {
+        super(maps.getInputMap(), maps.getOutputMap());
+
+        _maps = maps;
+    }
+
+    @Override
+    public String getInput(TnmInput key) {
+        return _maps.getInput(key);
+    }
+
+    @Override
+    public void setInput(TnmInput key, String value) {
+        _maps.setInput(key, value);
+    }
+
+    @Override
+    public String getOutput(TnmOutput key) {
+        return _maps.getOutput(key);
+    }
+
+    /**
+     * Replace the output; the values are copied since the output map of this object cannot be replaced
+     * @param output output map
+     */
+    @Override
+    public void setOutput(Map<String, String> output) {
+        _maps.setOutput(output);
+    }
+}
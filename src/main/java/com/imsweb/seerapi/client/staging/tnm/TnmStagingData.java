@@ -3,6 +3,8 @@
  */
 package com.imsweb.seerapi.client.staging.tnm;
 
+import java.util.Map;
+
 import com.imsweb.seerapi.client.staging.StagingData;
 
 public class TnmStagingData extends StagingData {
@@ -104,6 +106,15 @@ public class TnmStagingData extends StagingData {
         super();
     }
 
+    /**
+     * Construct with the maps used to store the input and output
+     * @param input input map
+     * @param output output map
+     */
+    protected TnmStagingData(Map<String, String> input, Map<String, String> output) {
+        super(input, output);
+    }
+
     /**
      * Construct with site and histology
      * @param site primary site
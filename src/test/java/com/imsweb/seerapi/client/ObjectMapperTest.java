@@ -1,7 +1,10 @@
 package com.imsweb.seerapi.client;
 
 import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -11,6 +14,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.imsweb.seerapi.client.disease.Disease;
 import com.imsweb.seerapi.client.disease.SiteRange;
 import com.imsweb.seerapi.client.disease.YearRange;
+import com.imsweb.seerapi.client.staging.StagingSchemaInfo;
+import com.imsweb.seerapi.client.staging.StagingService;
 
 public class ObjectMapperTest {
 
@@ -58,4 +63,18 @@ public class ObjectMapperTest {
         Assert.assertEquals("9840/3", partial.getIcdO3Morphology());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSharedReaders() throws IOException, NoSuchMethodException {
+        Assert.assertSame(SeerApiMapper.reader(Disease.class), SeerApiMapper.reader(Disease.class));
+        Assert.assertSame(SeerApiMapper.writer(Disease.class), SeerApiMapper.writer(Disease.class));
+
+        // generic response types of the services are supported
+        SeerApiMapper.warm(StagingService.class);
+        Type type = ((ParameterizedType)StagingService.class.getMethod("schemas", String.class, String.class).getGenericReturnType())
+                .getActualTypeArguments()[0];
+        List<StagingSchemaInfo> schemas = SeerApiMapper.reader(type).readValue("[{\"id\":\"breast\"}]");
+
+        Assert.assertEquals("breast", schemas.get(0).getId());
+    }
+
+}
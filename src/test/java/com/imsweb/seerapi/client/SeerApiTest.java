@@ -4,11 +4,44 @@
 package com.imsweb.seerapi.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+
+import com.imsweb.seerapi.client.metrics.InMemoryApiMetrics;
+import com.imsweb.seerapi.client.metrics.InMemoryApiMetrics.EndpointMetrics;
+import com.imsweb.seerapi.client.staging.StagingSchema;
+import com.imsweb.seerapi.client.staging.StagingService;
+import com.imsweb.seerapi.client.staging.StagingTable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class SeerApiTest {
 
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     @Test(expected = NotAuthorizedException.class)
     public void testBadApiKeyAndURL() throws IOException {
         new SeerApi.Builder().url("https://api.seer.cancer.gov/rest/").apiKey("BAD KEY").connect().siteRecode().version().execute();
@@ -19,4 +52,355 @@ public class SeerApiTest {
         new SeerApi.Builder().apiKey("BAD KEY").connect().siteRecode().version().execute();
     }
 
+    @Test
+    public void testImmutablePaths() {
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/staging/cs/02.05.50/schema/breast")).isTrue();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/staging/cs/02.05.50/table/primary_site")).isTrue();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/naaccr/flat/18")).isTrue();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/disease/latest/id/51754")).isFalse();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/disease/2018/id/51754")).isTrue();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/staging/cs/latest/schema/breast")).isFalse();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/staging/cs/02.05.50/schemas")).isFalse();
+        assertThat(ImmutableCacheInterceptor.isImmutable("/rest/naaccr/flat/versions")).isFalse();
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.enqueue(new MockResponse().setBody("[]"));
+            server.enqueue(new MockResponse().setBody("[]"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").cache(_folder.newFolder(), 1024 * 1024).connect();
+            StagingService staging = api.staging();
+
+            // version-scoped resources are only requested once
+            assertThat(staging.schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+            assertThat(staging.schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+
+            // other resources follow the server headers
+            staging.schemas("cs", "02.05.50").execute();
+            staging.schemas("cs", "02.05.50").execute();
+
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(api.getCacheHitCount()).isEqualTo(1);
+            assertThat(api.getCacheMissCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testAsync() throws IOException, InterruptedException, ExecutionException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.enqueue(new MockResponse().setResponseCode(404));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").connect();
+            AsyncService<StagingService> staging = api.async(StagingService.class);
+            assertThat(api.async(StagingService.class)).isSameAs(staging);
+
+            CompletableFuture<String> id = staging.call(s -> s.schemaById("cs", "02.05.50", "breast")).thenApply(StagingSchema::getId);
+            assertThat(id.get()).isEqualTo("breast");
+
+            // API errors are reported as the original exception
+            CompletableFuture<StagingSchema> missing = staging.call(s -> s.schemaById("cs", "02.05.50", "bad"));
+            assertThatThrownBy(missing::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(NotFoundException.class);
+        }
+    }
+
+    @Test
+    public void testClientSettings() throws IOException, InterruptedException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.start();
+
+            AtomicInteger calls = new AtomicInteger();
+            OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+                calls.incrementAndGet();
+                return chain.proceed(chain.request());
+            }).build();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key")
+                    .client(client)
+                    .maxRequests(128)
+                    .maxRequestsPerHost(32)
+                    .connectionPool(32, 1, TimeUnit.MINUTES)
+                    .connectTimeout(5, TimeUnit.SECONDS)
+                    .readTimeout(1, TimeUnit.MINUTES)
+                    .writeTimeout(1, TimeUnit.MINUTES)
+                    .connect();
+
+            assertThat(api.staging().schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+            assertThat(calls.get()).isEqualTo(1);
+            assertThat(server.takeRequest().getHeader("X-SEERAPI-Key")).isEqualTo("key");
+        }
+    }
+
+    @Test
+    public void testRetry() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+            server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.enqueue(new MockResponse().setResponseCode(503));
+            server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "3600"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").retry(3, 1, 10, TimeUnit.MILLISECONDS).connect();
+            RetryInterceptor retry = api.getRetryInterceptor();
+
+            assertThat(api.staging().schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+            assertThat(retry.getAttemptCount()).isEqualTo(3);
+            assertThat(retry.getRetryCount()).isEqualTo(2);
+
+            // POST calls are not retried by default
+            assertThatThrownBy(() -> api.staging().stage("cs", "02.05.50", Collections.emptyMap()).execute()).isInstanceOf(SeerApiException.class);
+            assertThat(retry.getRetryCount()).isEqualTo(2);
+
+            // a Retry-After longer than the maximum delay is not honored
+            assertThatThrownBy(() -> api.staging().schemaById("cs", "02.05.50", "breast").execute()).isInstanceOf(SeerApiException.class);
+            assertThat(retry.getExhaustedCount()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+            server.enqueue(new MockResponse().setResponseCode(500));
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").circuitBreaker(2, 50, TimeUnit.MILLISECONDS).connect();
+            CircuitBreakerInterceptor breaker = api.getCircuitBreaker();
+
+            for (int i = 0; i < 2; i++)
+                assertThatThrownBy(() -> api.staging().schemaById("cs", "02.05.50", "breast").execute()).isInstanceOf(SeerApiException.class);
+            assertThat(breaker.getState()).isEqualTo(CircuitBreakerInterceptor.State.OPEN);
+
+            assertThatThrownBy(() -> api.staging().schemaById("cs", "02.05.50", "breast").execute()).isInstanceOf(CircuitOpenException.class);
+            assertThat(breaker.getRejectedCount()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(2);
+
+            // once the open duration has elapsed, a successful trial closes the circuit
+            try {
+                Thread.sleep(60);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertThat(api.staging().schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+            assertThat(breaker.getState()).isEqualTo(CircuitBreakerInterceptor.State.CLOSED);
+            assertThat(breaker.getOpenedCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testCircuitBreakerCanceledTrial() throws IOException, InterruptedException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}").setHeadersDelay(5, TimeUnit.SECONDS));
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").circuitBreaker(1, 100, TimeUnit.MILLISECONDS).connect();
+            CircuitBreakerInterceptor breaker = api.getCircuitBreaker();
+
+            assertThatThrownBy(() -> api.staging().schemaById("cs", "02.05.50", "breast").execute()).isInstanceOf(SeerApiException.class);
+            assertThat(breaker.getState()).isEqualTo(CircuitBreakerInterceptor.State.OPEN);
+            Thread.sleep(150);
+
+            // canceling the trial call neither opens nor closes the circuit, and lets another trial call through
+            Call<StagingSchema> trial = api.staging().schemaById("cs", "02.05.50", "breast");
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+            scheduler.schedule(trial::cancel, 200, TimeUnit.MILLISECONDS);
+            assertThatThrownBy(trial::execute).isInstanceOf(IOException.class);
+            scheduler.shutdown();
+            assertThat(breaker.getState()).isEqualTo(CircuitBreakerInterceptor.State.HALF_OPEN);
+            assertThat(breaker.getOpenedCount()).isEqualTo(1);
+
+            assertThat(api.staging().schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+            assertThat(breaker.getState()).isEqualTo(CircuitBreakerInterceptor.State.CLOSED);
+        }
+    }
+
+    @Test
+    public void testRateLimit() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            for (int i = 0; i < 4; i++)
+                server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").rateLimit(1000, 10).rateLimit("staging/", 5, 1).connect();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 4; i++)
+                api.staging().schemaById("cs", "02.05.50", "breast").execute();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // the first call uses the burst, the next 3 calls are spaced by 200ms
+            RateLimiter limiter = api.getRateLimitInterceptor().getPrefixLimiters().get("staging/");
+            assertThat(elapsed).isGreaterThanOrEqualTo(590);
+            assertThat(limiter.getAcquiredCount()).isEqualTo(4);
+            assertThat(limiter.getDelayedCount()).isGreaterThanOrEqualTo(2);
+            assertThat(limiter.getMaxWaitTime(TimeUnit.MILLISECONDS)).isGreaterThan(0);
+            assertThat(api.getRateLimitInterceptor().getLimiter().getDelayedCount()).isZero();
+        }
+    }
+
+    @Test
+    public void testRateLimitRetries() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").retry(1, 10, 10, TimeUnit.MILLISECONDS).rateLimit(1000, 10).connect();
+
+            // the retry of the call uses a second permit
+            assertThat(api.staging().schemaById("cs", "02.05.50", "breast").execute().body().getId()).isEqualTo("breast");
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(api.getRateLimitInterceptor().getLimiter().getAcquiredCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testSingleFlight() throws IOException, InterruptedException, ExecutionException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").singleFlight(true).connect();
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<StagingSchema>> schemas = new ArrayList<>();
+                for (int i = 0; i < 4; i++)
+                    schemas.add(executor.submit(() -> api.staging().schemaById("cs", "02.05.50", "breast").execute().body()));
+
+                List<StagingSchema> results = new ArrayList<>();
+                for (Future<StagingSchema> schema : schemas)
+                    results.add(schema.get());
+
+                // every caller gets its own copy of the entity
+                assertThat(results).extracting("id").containsOnly("breast");
+                assertThat(results.get(0)).isNotSameAs(results.get(1));
+            }
+            finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(server.getRequestCount()).isEqualTo(1);
+            assertThat(api.getSingleFlightInterceptor().getNetworkCallCount()).isEqualTo(1);
+            assertThat(api.getSingleFlightInterceptor().getCoalescedCallCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testSingleFlightStreaming() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("[{\"id\":\"table_1\"},{\"id\":\"table_2\"}]"));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").singleFlight(true).connect();
+
+            // streamed responses are not buffered by the interceptor
+            try (Stream<StagingTable> tables = api.staging().streamTables("cs", "02.05.50").execute().body().stream()) {
+                assertThat(tables.map(StagingTable::getId)).containsExactly("table_1", "table_2");
+            }
+            assertThat(api.getSingleFlightInterceptor().getNetworkCallCount()).isZero();
+        }
+    }
+
+    @Test
+    public void testSingleFlightFollowerTimeout() throws IOException, InterruptedException, ExecutionException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}").setHeadersDelay(2, TimeUnit.SECONDS));
+            server.start();
+
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").singleFlight(true).connect();
+
+            ExecutorService executor = Executors.newFixedThreadPool(1);
+            try {
+                Future<StagingSchema> leader = executor.submit(() -> api.staging().schemaById("cs", "02.05.50", "breast").execute().body());
+                Thread.sleep(200);
+
+                // the followers give up on their own deadline or cancellation without waiting for the leader
+                long start = System.nanoTime();
+                Call<StagingSchema> timedOut = api.staging().schemaById("cs", "02.05.50", "breast");
+                timedOut.timeout().timeout(300, TimeUnit.MILLISECONDS);
+                assertThatThrownBy(timedOut::execute).isInstanceOf(InterruptedIOException.class);
+
+                Call<StagingSchema> canceled = api.staging().schemaById("cs", "02.05.50", "breast");
+                ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+                scheduler.schedule(canceled::cancel, 200, TimeUnit.MILLISECONDS);
+                assertThatThrownBy(canceled::execute).isInstanceOf(IOException.class);
+                scheduler.shutdown();
+                assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+
+                assertThat(leader.get().getId()).isEqualTo("breast");
+            }
+            finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(server.getRequestCount()).isEqualTo(1);
+            assertThat(api.getSingleFlightInterceptor().getCoalescedCallCount()).isZero();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"id\":\"breast\"}"));
+            server.enqueue(new MockResponse().setResponseCode(404));
+            server.start();
+
+            InMemoryApiMetrics metrics = new InMemoryApiMetrics();
+            SeerApi api = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").metrics(metrics).connect();
+
+            api.staging().schemaById("cs", "02.05.50", "breast").execute();
+            assertThatThrownBy(() -> api.staging().schemaById("cs", "02.05.50", "bad").execute()).isInstanceOf(NotFoundException.class);
+
+            EndpointMetrics endpoint = metrics.getEndpoint("GET staging/{algorithm}/{version}/schema/{id}");
+            assertThat(metrics.getEndpoints()).containsOnlyKeys(endpoint.getEndpoint());
+            assertThat(endpoint.getStatusCodeCounts()).containsEntry(200, 1L).containsEntry(404, 1L);
+            assertThat(endpoint.getLatency().getCount()).isEqualTo(2);
+            assertThat(endpoint.getLatency().getBuckets().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(2);
+            assertThat(endpoint.getResponseBytes()).isEqualTo(15);
+            assertThat(endpoint.getConnectionCount()).isEqualTo(1);
+            assertThat(endpoint.getDeserializationCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testStreaming() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("[{\"id\":\"table_1\"},{\"id\":\"table_2\"},{\"id\":\"table_3\"}]"));
+            server.enqueue(new MockResponse().setBody("[{\"id\":\"table_1\"},{\"id\":\"table_2\"},{\"id\":\"table_3\"}]"));
+            server.enqueue(new MockResponse().setBody("[]"));
+            server.enqueue(new MockResponse().setResponseCode(404));
+            server.start();
+
+            StagingService staging = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").connect().staging();
+
+            try (Stream<StagingTable> tables = staging.streamTables("cs", "02.05.50").execute().body().stream()) {
+                assertThat(tables.map(StagingTable::getId)).containsExactly("table_1", "table_2", "table_3");
+            }
+
+            // stop reading after the first element
+            try (JsonStream<StagingTable> tables = staging.streamTables("cs", "02.05.50").execute().body()) {
+                assertThat(tables.next().getId()).isEqualTo("table_1");
+            }
+
+            JsonStream<StagingTable> empty = staging.streamTables("cs", "02.05.50").execute().body();
+            assertThat(empty.hasNext()).isFalse();
+            assertThatThrownBy(empty::next).isInstanceOf(NoSuchElementException.class);
+
+            assertThatThrownBy(() -> staging.streamTables("cs", "bad").execute()).isInstanceOf(NotFoundException.class);
+            assertThat(server.getRequestCount()).isEqualTo(4);
+        }
+    }
 }
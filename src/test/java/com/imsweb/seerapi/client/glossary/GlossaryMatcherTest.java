@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.glossary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import com.imsweb.seerapi.client.SeerApi;
+import com.imsweb.seerapi.client.glossary.Glossary.Category;
+import com.imsweb.seerapi.client.shared.KeywordMatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GlossaryMatcherTest {
+
+    private static Glossary entry(String id, String name, List<String> alternateNames, Category... categories) {
+        Glossary glossary = new Glossary();
+        glossary.setId(id);
+        glossary.setName(name);
+        glossary.setAlternateName(alternateNames);
+        glossary.setCategories(Arrays.asList(categories));
+        return glossary;
+    }
+
+    private static GlossaryMatcher createMatcher() {
+        List<Glossary> entries = new ArrayList<>();
+        entries.add(entry("1", "Summary Stage", Collections.singletonList("SS2000"), Category.STAGING));
+        entries.add(entry("2", "Stage", null, Category.STAGING, Category.GENERAL));
+        entries.add(entry("3", "Carcinoma", Arrays.asList("carcinomas", "CA"), Category.SOLID_TUMOR));
+        entries.add(entry("4", "Age", null, Category.GENERAL));
+
+        return new GlossaryMatcher(entries);
+    }
+
+    private static List<String> format(Set<KeywordMatch> matches) {
+        return matches.stream().map(m -> m.getId() + ":" + m.getKeyword() + ":" + m.getStart() + "-" + m.getEnd()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testMatch() {
+        GlossaryMatcher matcher = createMatcher();
+        assertThat(matcher.getTermCount()).isEqualTo(7);
+
+        String text = "This text contains summary stage which should be found.";
+
+        assertThat(format(matcher.match(text, null, true))).containsExactly("1:Summary Stage:19-32", "2:Stage:27-32");
+        assertThat(format(matcher.match(text, null, false))).containsExactly("1:Summary Stage:19-32", "2:Stage:27-32", "4:Age:29-32");
+        assertThat(format(matcher.match(text, EnumSet.of(Category.GENERAL), true))).containsExactly("2:Stage:27-32");
+        assertThat(format(matcher.match(text, EnumSet.of(Category.SOLID_TUMOR), false))).isEmpty();
+
+        // terms which are prefixes and suffixes of each other
+        text = "Carcinomas (CA), stage unknown; SS2000 given";
+        assertThat(format(matcher.match(text, null, true))).containsExactly("3:carcinomas:0-10", "3:CA:12-14", "2:Stage:17-22", "1:SS2000:32-38");
+        assertThat(format(matcher.match(text, null, false))).containsExactly("3:carcinomas:0-10", "3:Carcinoma:0-9", "3:CA:0-2", "3:CA:12-14", "2:Stage:17-22",
+                "4:Age:19-22", "1:SS2000:32-38");
+
+        KeywordMatch match = matcher.match(text, null, true).iterator().next();
+        assertThat(match.getName()).isEqualTo("Carcinoma");
+        assertThat(match.getCategory()).containsExactly("SOLID_TUMOR");
+
+        assertThat(matcher.match("", null, false)).isEmpty();
+        assertThat(matcher.match(null, null, false)).isEmpty();
+        assertThat(new GlossaryMatcher(Collections.emptyList()).match(text, null, false)).isEmpty();
+    }
+
+    @Test
+    public void testDownload() throws IOException {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setBody("{\"total\":2,\"results\":[{\"id\":\"1\",\"name\":\"Stage\",\"category\":[\"STAGING\"]}]}"));
+            server.enqueue(new MockResponse().setBody("{\"total\":2,\"results\":[{\"id\":\"2\",\"name\":\"Tumor\",\"alternate_name\":[\"Neoplasm\"]}]}"));
+            server.start();
+
+            GlossaryService service = new SeerApi.Builder().url(server.url("/rest/").toString()).apiKey("key").connect().glossary();
+            GlossaryMatcher matcher = GlossaryMatcher.download(service, "latest");
+
+            assertThat(matcher.getTermCount()).isEqualTo(3);
+            assertThat(format(matcher.match("stage of neoplasm", null, true))).containsExactly("1:Stage:0-5", "2:Neoplasm:9-17");
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(server.takeRequest().getRequestUrl().queryParameter("offset")).isEqualTo("0");
+            assertThat(server.takeRequest().getRequestUrl().queryParameter("offset")).isEqualTo("1");
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
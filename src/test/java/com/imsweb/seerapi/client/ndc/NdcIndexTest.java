@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.ndc;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import com.imsweb.seerapi.client.SeerApi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NdcIndexTest {
+
+    private static NdcIndex createIndex() throws IOException {
+        String json = "["
+                + "{\"ndc\":\"0002-3227\",\"packages\":[{\"package\":\"0002-3227-30\"},{\"package\":\"0002-3227-61\"}]},"
+                + "{\"ndc\":\"12345-678\",\"packages\":[{\"package\":\"12345-678-90\"}]},"
+                + "{\"ndc\":\"54321-1234\",\"packages\":[{\"package\":\"54321-1234-5\"}]},"
+                + "{\"ndc\":\"0123-4567\",\"packages\":[{\"package\":\"0123-4567-89\"}]},"
+                + "{\"ndc\":\"01234-567\",\"packages\":[{\"package\":\"01234-567-89\"}]}"
+                + "]";
+
+        List<NdcProduct> products = SeerApi.getMapper().readValue(json, new TypeReference<List<NdcProduct>>() {});
+        return new NdcIndex(products);
+    }
+
+    @Test
+    public void testNormalize() {
+        assertThat(NdcIndex.normalizePackageCode("0002-3227-30")).isEqualTo("00002322730");
+        assertThat(NdcIndex.normalizePackageCode("12345-678-90")).isEqualTo("12345067890");
+        assertThat(NdcIndex.normalizePackageCode("54321-1234-5")).isEqualTo("54321123405");
+        assertThat(NdcIndex.normalizePackageCode("00002-3227-30")).isEqualTo("00002322730");
+        assertThat(NdcIndex.normalizePackageCode(" 00002322730 ")).isEqualTo("00002322730");
+        assertThat(NdcIndex.normalizePackageCode("0002322730")).isNull();
+        assertThat(NdcIndex.normalizePackageCode("002-3227-30")).isNull();
+        assertThat(NdcIndex.normalizePackageCode("0002-327-30")).isNull();
+        assertThat(NdcIndex.normalizePackageCode("0002-3227-3X")).isNull();
+        assertThat(NdcIndex.normalizePackageCode(null)).isNull();
+
+        assertThat(NdcIndex.normalizeProductCode("0002-3227")).isEqualTo("000023227");
+        assertThat(NdcIndex.normalizeProductCode("12345-678")).isEqualTo("123450678");
+        assertThat(NdcIndex.normalizeProductCode("000023227")).isEqualTo("000023227");
+        assertThat(NdcIndex.normalizeProductCode("00023227")).isNull();
+        assertThat(NdcIndex.normalizeProductCode("002-327")).isNull();
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        NdcIndex index = createIndex();
+
+        assertThat(index.getProductCount()).isEqualTo(5);
+        assertThat(index.getPackageCount()).isEqualTo(6);
+
+        // every format of the same package
+        for (String code : new String[] {"0002-3227-30", "00002-3227-30", "00002322730", "0002322730"}) {
+            assertThat(index.getPackage(code).getCode()).as(code).isEqualTo("0002-3227-30");
+            assertThat(index.getProduct(code).getNdc()).as(code).isEqualTo("0002-3227");
+        }
+        assertThat(index.getPackage("1234567890").getCode()).isEqualTo("12345-678-90");
+        assertThat(index.getPackage("54321-01234-05")).isNull();
+        assertThat(index.getPackage("54321123405").getCode()).isEqualTo("54321-1234-5");
+
+        // product codes
+        assertThat(index.getProduct("00002-3227").getNdc()).isEqualTo("0002-3227");
+        assertThat(index.getProduct("00023227").getNdc()).isEqualTo("0002-3227");
+        assertThat(index.getProduct("123450678").getNdc()).isEqualTo("12345-678");
+        assertThat(index.getPackage("0002-3227")).isNull();
+        assertThat(index.getProduct("9999-9999-99")).isNull();
+
+        // 0123-4567-89 and 01234-567-89 are both 0123456789 without hyphens
+        assertThat(index.getPackage("00123456789").getCode()).isEqualTo("0123-4567-89");
+        assertThat(index.getPackage("01234056789").getCode()).isEqualTo("01234-567-89");
+        assertThat(index.getPackage("0123456789")).isNull();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.ndc;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import com.imsweb.seerapi.client.AsyncService;
+import com.imsweb.seerapi.client.SeerApi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NdcMirrorTest {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private MockWebServer _server;
+    private AsyncService<NdcService> _ndc;
+    private final List<String> _queries = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        _server = new MockWebServer();
+        _server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                HttpUrl url = request.getRequestUrl();
+                _queries.add(url.query());
+
+                String body;
+                if (url.queryParameter("added_since") != null)
+                    body = "[" + product("0004-0004", "Added", null) + "]";
+                else if (url.queryParameter("modified_since") != null)
+                    body = "[" + product("0002-0002", "Modified", null) + "]";
+                else if (url.queryParameter("removed_since") != null)
+                    body = "[" + product("0003-0003", "Removed", "2021-03-01T10:00:00.000Z") + "]";
+                else
+                    body = "[" + product("0001-0001", "One", null) + "," + product("0002-0002", "Two", null) + "," + product("0003-0003", "Three", null) + "]";
+
+                return new MockResponse().setBody(body);
+            }
+        });
+        _server.start();
+
+        _ndc = new SeerApi.Builder().url(_server.url("/rest/").toString()).apiKey("key").connect().async(NdcService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        _server.shutdown();
+    }
+
+    private static String product(String ndc, String name, String removed) {
+        return "{\"ndc\":\"" + ndc + "\",\"proprietary_name\":\"" + name + "\"" + (removed == null ? "" : ",\"date_removed\":\"" + removed + "\"") + "}";
+    }
+
+    private static Clock day(String date) {
+        return Clock.fixed(Instant.parse(date + "T12:00:00Z"), ZoneOffset.UTC);
+    }
+
+    @Test
+    public void testSync() throws IOException {
+        File file = new File(_folder.getRoot(), "ndc.json.gz");
+
+        NdcMirror mirror = new NdcMirror(_ndc, file, day("2021-03-01"));
+        assertThat(mirror.getWatermark()).isNull();
+        assertThat(mirror.getByCode("0001-0001")).isNull();
+
+        // first sync is a full load
+        mirror.sync();
+        assertThat(mirror.size()).isEqualTo(3);
+        assertThat(mirror.getByCode("0002-0002").getProprietaryName()).isEqualTo("Two");
+        assertThat(mirror.getByCode("000020002").getProprietaryName()).isEqualTo("Two");
+        assertThat(mirror.getWatermark()).isEqualTo(LocalDate.of(2021, 3, 1));
+        assertThat(file).exists();
+        assertThat(_queries).hasSize(1);
+
+        // a new mirror continues from the saved file with a delta sync
+        mirror = new NdcMirror(_ndc, file, day("2021-03-05"));
+        assertThat(mirror.size()).isEqualTo(3);
+        assertThat(mirror.getWatermark()).isEqualTo(LocalDate.of(2021, 3, 1));
+
+        mirror.sync();
+        assertThat(_queries.subList(1, 4)).allMatch(q -> q.contains("_since=2021-03-01"));
+        assertThat(mirror.size()).isEqualTo(3);
+        assertThat(mirror.getByCode("0001-0001").getProprietaryName()).isEqualTo("One");
+        assertThat(mirror.getByCode("0002-0002").getProprietaryName()).isEqualTo("Modified");
+        assertThat(mirror.getByCode("0003-0003")).isNull();
+        assertThat(mirror.getByCode("0004-0004").getProprietaryName()).isEqualTo("Added");
+        assertThat(mirror.getWatermark()).isEqualTo(LocalDate.of(2021, 3, 5));
+
+        assertThat(new NdcMirror(_ndc, file).getWatermark()).isEqualTo(LocalDate.of(2021, 3, 5));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.ndc;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import com.imsweb.seerapi.client.AsyncService;
+import com.imsweb.seerapi.client.NotFoundException;
+import com.imsweb.seerapi.client.SeerApi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NdcSearchPagerTest {
+
+    private MockWebServer _server;
+    private final AtomicInteger _inFlight = new AtomicInteger();
+    private final AtomicInteger _maxInFlight = new AtomicInteger();
+
+    @After
+    public void tearDown() throws IOException {
+        if (_server != null)
+            _server.shutdown();
+    }
+
+    private AsyncService<NdcService> start(int total, boolean withTotalCount) throws IOException {
+        return start(total, withTotalCount ? String.valueOf(total) : null, new SeerApi.Builder());
+    }
+
+    private AsyncService<NdcService> start(int total, String totalCount, SeerApi.Builder builder) throws IOException {
+        _server = new MockWebServer();
+        _server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                _maxInFlight.accumulateAndGet(_inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                    return page(request.getRequestUrl(), total, totalCount);
+                }
+                finally {
+                    _inFlight.decrementAndGet();
+                }
+            }
+        });
+        _server.start();
+
+        return builder.url(_server.url("/rest/").toString()).apiKey("key").connect().async(NdcService.class);
+    }
+
+    private static MockResponse page(HttpUrl url, int total, String totalCount) {
+
+        int page = Integer.parseInt(url.queryParameter("page"));
+        int perPage = Integer.parseInt(url.queryParameter("per_page"));
+        if (page > 100)
+            return new MockResponse().setResponseCode(404);
+
+        String body = IntStream.range((page - 1) * perPage, Math.min(total, page * perPage))
+                .mapToObj(i -> "{\"ndc\":\"" + i + "\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        MockResponse response = new MockResponse().setBody(body);
+        if (totalCount != null)
+            response.setHeader("X-Total-Count", totalCount);
+        return response;
+    }
+
+    private static List<String> codes(Stream<NdcProduct> products) {
+        try (Stream<NdcProduct> stream = products) {
+            return stream.map(NdcProduct::getNdc).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testTotalCount() throws IOException {
+        AsyncService<NdcService> ndc = start(10, true);
+
+        NdcSearch search = new NdcSearch();
+        search.setPerPage(3);
+
+        assertThat(codes(new NdcSearchPager(ndc, search, 2).stream())).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+        assertThat(_server.getRequestCount()).isEqualTo(4);
+
+        // starting on a later page
+        search.setPage(3);
+        assertThat(codes(new NdcSearchPager(ndc, search, 8).stream())).containsExactly("6", "7", "8", "9");
+        assertThat(_server.getRequestCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void testWithoutTotalCount() throws IOException {
+        AsyncService<NdcService> ndc = start(9, false);
+
+        NdcSearch search = new NdcSearch();
+        search.setPerPage(3);
+
+        // the end is only found with the first page which is not full
+        assertThat(codes(new NdcSearchPager(ndc, search, 2).stream())).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8");
+        assertThat(new NdcSearchPager(ndc, search, 2).stream().limit(2).count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidTotalCount() throws IOException {
+        AsyncService<NdcService> ndc = start(9, "not a number", new SeerApi.Builder());
+
+        NdcSearch search = new NdcSearch();
+        search.setPerPage(3);
+
+        // an invalid count is ignored, so the end is found with the first page which is not full
+        assertThat(codes(new NdcSearchPager(ndc, search, 2).stream())).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8");
+    }
+
+    @Test
+    public void testDispatcherLimit() throws IOException {
+        AsyncService<NdcService> ndc = start(100, "100", new SeerApi.Builder().maxRequests(2));
+
+        NdcSearch search = new NdcSearch();
+        search.setPerPage(5);
+
+        // the pages are queued on the dispatcher of the client, which runs no more than 2 calls at the same time
+        assertThat(codes(new NdcSearchPager(ndc, search, 8).stream())).hasSize(100);
+        assertThat(_server.getRequestCount()).isEqualTo(20);
+        assertThat(_maxInFlight.get()).isBetween(1, 2);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        AsyncService<NdcService> ndc = start(0, true);
+
+        assertThat(codes(new NdcSearchPager(ndc, new NdcSearch()).stream())).isEmpty();
+        assertThat(_server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testError() throws IOException {
+        AsyncService<NdcService> ndc = start(1000, false);
+
+        NdcSearch search = new NdcSearch();
+        search.setPage(99);
+        search.setPerPage(1);
+
+        assertThatThrownBy(() -> codes(new NdcSearchPager(ndc, search).stream())).isInstanceOf(NotFoundException.class);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.imsweb.seerapi.client.SeerApi;
+import com.imsweb.seerapi.client.staging.cs.CompactCsStagingData;
+import com.imsweb.seerapi.client.staging.cs.CsStagingData;
+import com.imsweb.seerapi.client.staging.cs.CsStagingData.CsInput;
+import com.imsweb.seerapi.client.staging.cs.CsStagingData.CsOutput;
+import com.imsweb.seerapi.client.staging.eod.CompactEodStagingData;
+import com.imsweb.seerapi.client.staging.eod.EodStagingData.EodInput;
+import com.imsweb.seerapi.client.staging.eod.EodStagingData.EodOutput;
+import com.imsweb.seerapi.client.staging.tnm.CompactTnmStagingData;
+import com.imsweb.seerapi.client.staging.tnm.TnmStagingData.TnmOutput;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactStagingDataTest {
+
+    @Test
+    public void testEnumKeyedMap() {
+        EnumKeyedMap<CsInput> map = new EnumKeyedMap<>(EnumKeyedMap.keys(CsInput.class));
+        Map<String, String> expected = new HashMap<>();
+
+        assertThat(map).isEmpty();
+
+        map.put(CsInput.PRIMARY_SITE, "C509");
+        map.put("hist", "8500");
+        map.put("unknown_key", "1");
+        expected.put("site", "C509");
+        expected.put("hist", "8500");
+        expected.put("unknown_key", "1");
+
+        assertThat(map).isEqualTo(expected).hasSize(3);
+        assertThat(map.get("site")).isEqualTo("C509");
+        assertThat(map.get(CsInput.HISTOLOGY)).isEqualTo("8500");
+        assertThat(map.get("unknown_key")).isEqualTo("1");
+        assertThat(map.containsKey("grade")).isFalse();
+
+        // null values remove keys
+        assertThat(map.put("hist", null)).isEqualTo("8500");
+        assertThat(map.put("unknown_key", null)).isEqualTo("1");
+        assertThat(map).containsOnlyKeys("site");
+
+        map.put("ssf1", "010");
+        map.put("other", "x");
+        Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, String> entry = iterator.next();
+            if (entry.getKey().equals("site"))
+                entry.setValue("C500");
+            else if (!entry.getKey().equals("other"))
+                iterator.remove();
+        }
+        assertThat(map).containsOnlyKeys("site", "other").containsEntry("site", "C500");
+
+        map.clear();
+        assertThat(map).isEmpty();
+        assertThat(map.get("site")).isNull();
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        ObjectMapper mapper = SeerApi.getMapper();
+
+        CsStagingData data = new CsStagingData("C509", "8500");
+        data.setSsf(1, "010");
+        data.setInput("unknown_key", "1");
+        Map<String, String> output = new HashMap<>();
+        output.put(CsOutput.SS2000_STAGE.toString(), "1");
+        output.put("unknown_output", "2");
+        data.setOutput(output);
+        data.setResult(StagingData.Result.STAGED);
+
+        // the compact version reads the same JSON and writes the same input and output
+        CompactCsStagingData compact = mapper.readValue(mapper.writeValueAsString(data), CompactCsStagingData.class);
+        assertThat(compact.getInput()).isInstanceOf(EnumKeyedMap.class).isEqualTo(data.getInput());
+        assertThat(compact.getOutput()).isInstanceOf(EnumKeyedMap.class).isEqualTo(data.getOutput());
+        assertThat(compact.getResult()).isEqualTo(StagingData.Result.STAGED);
+        assertThat(compact.getSsf(1)).isEqualTo("010");
+        assertThat(compact.getInput(CsInput.PRIMARY_SITE)).isEqualTo("C509");
+        assertThat(compact.getOutput(CsOutput.SS2000_STAGE)).isEqualTo("1");
+
+        CsStagingData copy = mapper.readValue(mapper.writeValueAsString(compact), CsStagingData.class);
+        assertThat(copy.getInput()).isEqualTo(data.getInput());
+        assertThat(copy.getOutput()).isEqualTo(data.getOutput());
+
+        String json = mapper.writeValueAsString(compact);
+        assertThat(mapper.readTree(json).has("input")).isTrue();
+        assertThat(mapper.readTree(json).has("_input")).isFalse();
+    }
+
+    @Test
+    public void testAlgorithms() {
+        CompactTnmStagingData tnm = new CompactTnmStagingData("C509", "8500");
+        tnm.setSsf(25, "981");
+        tnm.setOutput(new HashMap<>());
+        tnm.getOutput().put(TnmOutput.PATH_STAGE_GROUP.toString(), "1A");
+        assertThat(tnm.getInput(StagingData.PRIMARY_SITE_KEY)).isEqualTo("C509");
+        assertThat(tnm.getSsf(25)).isEqualTo("981");
+        assertThat(tnm.getOutput(TnmOutput.PATH_STAGE_GROUP)).isEqualTo("1A");
+
+        CompactEodStagingData eod = new CompactEodStagingData("C509", "8500");
+        eod.setInput(EodInput.DISCRIMINATOR_1, "1");
+        eod.getOutput().put(EodOutput.SS_2018_DERIVED.toString(), "2");
+        assertThat(eod.getInput()).containsOnlyKeys("site", "hist", "discriminator_1");
+        assertThat(eod.getOutput(EodOutput.SS_2018_DERIVED)).isEqualTo("2");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.imsweb.seerapi.client.staging.StagingColumnDefinition.ColumnType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompiledStagingTableTest {
+
+    @Test
+    public void testFindMatchingRow() {
+        CompiledStagingTable table = new CompiledStagingTable(table(Arrays.asList(
+                Arrays.asList("001-050,999", "A", "VALUE:1"),
+                Arrays.asList("010", "B", "VALUE:2"),
+                Arrays.asList("051-100", "*", "VALUE:3"),
+                Arrays.asList("", "A,B", "VALUE:4"),
+                Arrays.asList("*", "{{other}}", "VALUE:5"))));
+
+        assertThat(table.getInputKeys()).containsExactly("size", "ext");
+        assertThat(table.findMatchingRow(context("025", "A"))).isEqualTo(0);
+        assertThat(table.findMatchingRow(context("999", "A"))).isEqualTo(0);
+        assertThat(table.findMatchingRow(context("010", "B"))).isEqualTo(1);
+        assertThat(table.findMatchingRow(context("075", "Z"))).isEqualTo(2);
+        assertThat(table.findMatchingRow(context(null, "B"))).isEqualTo(3);
+        assertThat(table.findMatchingRow(context("25", "A"))).isEqualTo(-1);
+
+        Map<String, String> context = context("500", "Q");
+        assertThat(table.findMatchingRow(context)).isEqualTo(-1);
+        context.put("other", "Q");
+        assertThat(table.findMatchingRow(context)).isEqualTo(4);
+
+        // only match on a subset of columns
+        assertThat(table.findMatchingRow(context("010", "Z"), Collections.singleton("size"))).isEqualTo(0);
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(42);
+
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int low = random.nextInt(900);
+            String size = random.nextInt(4) == 0 ? String.format("%03d", low) : String.format("%03d-%03d", low, low + random.nextInt(100));
+            String ext = random.nextInt(10) == 0 ? "*" : String.format("%02d", random.nextInt(20)) + "," + String.format("%02d", random.nextInt(20));
+            rows.add(Arrays.asList(size, ext, "VALUE:" + i));
+        }
+
+        StagingTable raw = table(rows);
+        CompiledStagingTable table = new CompiledStagingTable(raw);
+        List<StagingTableRow> parsed = StagingTableRow.parse(raw);
+
+        for (int i = 0; i < 5000; i++) {
+            Map<String, String> context = context(String.format("%03d", random.nextInt(1000)), String.format("%02d", random.nextInt(22)));
+
+            int expected = -1;
+            for (int row = 0; row < parsed.size() && expected < 0; row++)
+                if (parsed.get(row).matches(context, null))
+                    expected = row;
+
+            assertThat(table.findMatchingRow(context)).as(context.toString()).isEqualTo(expected);
+        }
+    }
+
+    private static Map<String, String> context(String size, String ext) {
+        Map<String, String> context = new HashMap<>();
+        context.put("size", size);
+        context.put("ext", ext);
+        return context;
+    }
+
+    private static StagingTable table(List<List<String>> rows) {
+        StagingTable table = new StagingTable();
+        table.setId("test");
+        table.setColumnDefinitions(Arrays.asList(new StagingColumnDefinition("size", "Size", ColumnType.INPUT), new StagingColumnDefinition("ext", "Extension", ColumnType.INPUT),
+                new StagingColumnDefinition("result", "Result", ColumnType.ENDPOINT)));
+        table.setRawRows(rows);
+        return table;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.imsweb.seerapi.client.SeerApiMapper;
+import com.imsweb.seerapi.client.naaccr.NaaccrFlatField;
+import com.imsweb.seerapi.client.staging.StagingData.Result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class NaaccrFlatStagerTest {
+
+    private static StagingEngine _ENGINE;
+    private static List<NaaccrFlatField> _LAYOUT;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        List<StagingSchema> schemas = StagingTestData.schemas();
+        StagingSchema breast = schemas.get(0);
+        breast.getInputs().get(0).setNaaccrItem(400);
+        breast.getInputs().get(1).setNaaccrItem(522);
+        breast.getInputs().get(2).setNaaccrItem(391);
+        breast.getInputs().get(3).setNaaccrItem(780);
+        breast.getOutputs().get(0).setNaaccrItem(1000);
+        breast.getOutputs().get(1).setNaaccrItem(1010);
+        _ENGINE = new StagingEngine(schemas, StagingTestData.tables());
+
+        // the year of diagnosis is a sub-field of the date of diagnosis
+        _LAYOUT = new ArrayList<>();
+        _LAYOUT.add(field("{\"item\":400,\"start_col\":1,\"end_col\":4}"));
+        _LAYOUT.add(field("{\"item\":522,\"start_col\":5,\"end_col\":8}"));
+        _LAYOUT.add(field("{\"item\":390,\"start_col\":9,\"end_col\":16,\"subfield\":[{\"item\":391,\"start_col\":9,\"end_col\":12}]}"));
+        _LAYOUT.add(field("{\"item\":780,\"start_col\":17,\"end_col\":19}"));
+        _LAYOUT.add(field("{\"item\":1000,\"start_col\":20,\"end_col\":21,\"alignment\":\"LEFT\",\"padding_char\":\" \"}"));
+        _LAYOUT.add(field("{\"item\":1010,\"start_col\":22,\"end_col\":24,\"alignment\":\"RIGHT\",\"padding_char\":\"0\"}"));
+    }
+
+    @Test
+    public void testNaaccrItems() {
+        assertThat(NaaccrFlatStager.getNaaccrItems(_ENGINE)).containsExactly(391, 400, 522, 780, 1000, 1010);
+    }
+
+    @Test
+    public void testExtractInputs() {
+        NaaccrFlatStager stager = new NaaccrFlatStager(_ENGINE, _LAYOUT);
+
+        assertThat(stager.extractInputs("C5098000201801010 5".getBytes(StandardCharsets.ISO_8859_1)))
+                .containsEntry("site", "C509").containsEntry("hist", "8000").containsEntry("year_dx", "2018").containsEntry("size", "0 5");
+
+        // blank and missing columns are not included
+        assertThat(stager.extractInputs("C509    2018".getBytes(StandardCharsets.ISO_8859_1))).containsOnlyKeys("site", "year_dx");
+    }
+
+    @Test
+    public void testStage() throws IOException, InterruptedException {
+        String input = "C50980002018010107501XX\n"
+                + "C509800020180101010\r\n"
+                + "C0018000201801010101234 TEXT\n"
+                + "C509800020180101999";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<StagingData> results = new ArrayList<>();
+        long count = new NaaccrFlatStager(_ENGINE, _LAYOUT, 2).stage(new ByteArrayInputStream(input.getBytes(StandardCharsets.ISO_8859_1)), out, results::add);
+
+        assertThat(count).isEqualTo(4);
+        assertThat(results).extracting(StagingData::getResult).containsExactly(Result.STAGED, Result.STAGED, Result.FAILED_NO_MATCHING_SCHEMA, Result.STAGED);
+        assertThat(results.get(0).getOutput()).containsEntry("t", "T2").containsEntry("stage", "2");
+
+        // outputs are written in their columns, the output columns of failures are cleared and the line terminators are kept
+        assertThat(Arrays.asList(new String(out.toByteArray(), StandardCharsets.ISO_8859_1).split("(?<=\n)"))).containsExactly(
+                "C509800020180101075T2002\n",
+                "C509800020180101010T1001\r\n",
+                "C001800020180101010     TEXT\n",
+                "C509800020180101999  099");
+    }
+
+    @Test
+    public void testLinesAcrossReads() throws IOException, InterruptedException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            input.append("C509800020180101075     ").append(i % 2 == 0 ? "\n" : "\r\n");
+        String expected = input.toString().replace("075     ", "075T2002");
+        String longLine = String.join("", Collections.nCopies(70000, "X"));
+        input.append(longLine).append("\n\n");
+        byte[] bytes = input.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        // the long line does not match any schema so its output columns are cleared, the blank line is copied as is
+        expected += longLine.substring(0, 19) + "     " + longLine.substring(24) + "\n\n";
+
+        // a stream which returns at most 7 bytes per read, so lines span several reads
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(new NaaccrFlatStager(_ENGINE, _LAYOUT).stage(in, out)).isEqualTo(102);
+        assertThat(new String(out.toByteArray(), StandardCharsets.ISO_8859_1)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testOutputTooLong() throws IOException, InterruptedException {
+        // the T column can only hold one character
+        List<NaaccrFlatField> layout = new ArrayList<>(_LAYOUT);
+        layout.set(4, field("{\"item\":1000,\"start_col\":20,\"end_col\":20}"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<StagingData> results = new ArrayList<>();
+        new NaaccrFlatStager(_ENGINE, layout).stage(new ByteArrayInputStream("C509800020180101075XXXXX".getBytes(StandardCharsets.ISO_8859_1)), out, results::add);
+
+        assertThat(new String(out.toByteArray(), StandardCharsets.ISO_8859_1)).isEqualTo("C509800020180101075 X002");
+        assertThat(results.get(0).getResult()).isEqualTo(Result.STAGED);
+        assertThat(results.get(0).getErrors()).extracting("type", "key").containsExactly(tuple(StagingError.Type.INVALID_OUTPUT, "t"));
+        assertThat(results.get(0).getErrors().get(0).getMessage()).isEqualTo("Value of 't' (T2) does not fit in its column (NAACCR item 1000, length 1)");
+    }
+
+    private static NaaccrFlatField field(String json) throws IOException {
+        return SeerApiMapper.reader(NaaccrFlatField.class).readValue(json);
+    }
+}
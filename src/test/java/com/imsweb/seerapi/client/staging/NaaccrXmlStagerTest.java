@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.imsweb.seerapi.client.SeerApiMapper;
+import com.imsweb.seerapi.client.naaccr.NaaccrXmlField;
+import com.imsweb.seerapi.client.staging.NaaccrXmlStager.TumorResult;
+import com.imsweb.seerapi.client.staging.StagingData.Result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NaaccrXmlStagerTest {
+
+    private static StagingEngine _ENGINE;
+
+    @BeforeClass
+    public static void setup() {
+        List<StagingSchema> schemas = StagingTestData.schemas();
+        StagingSchema breast = schemas.get(0);
+        breast.getInputs().get(0).setNaaccrXmlId("primarySite");
+        breast.getInputs().get(1).setNaaccrXmlId("histologicTypeIcdO3");
+        breast.getInputs().get(2).setNaaccrXmlId("yearDx");
+        breast.getInputs().get(3).setNaaccrItem(780);
+        _ENGINE = new StagingEngine(schemas, StagingTestData.tables());
+    }
+
+    @Test
+    public void testNaaccrXmlIds() {
+        assertThat(NaaccrXmlStager.getNaaccrXmlIds(_ENGINE)).containsExactly("histologicTypeIcdO3", "primarySite", "yearDx");
+    }
+
+    @Test
+    public void testStage() throws IOException, InterruptedException {
+        // the item number of the tumor size is resolved from the field definitions
+        NaaccrXmlField size = SeerApiMapper.reader(NaaccrXmlField.class).readValue("{\"id\":\"tumorSizeSummary\",\"item\":780,\"parent_xml_element\":\"Tumor\"}");
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<NaaccrData baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-210.xml\" recordType=\"A\" xmlns=\"http://naaccr.org/naaccrxml\">\n"
+                + "  <Item naaccrId=\"yearDx\">2018</Item>\n"
+                + "  <Patient>\n"
+                + "    <Item naaccrId=\"patientIdNumber\">00000001</Item>\n"
+                + "    <Tumor>\n"
+                + "      <Item naaccrId=\"primarySite\">C509</Item>\n"
+                + "      <Item naaccrId=\"histologicTypeIcdO3\">8000</Item>\n"
+                + "      <Item naaccrId=\"tumorSizeSummary\"> 075 </Item>\n"
+                + "      <Item naaccrId=\"textRemarks\">Not needed for staging</Item>\n"
+                + "    </Tumor>\n"
+                + "    <Tumor>\n"
+                + "      <Item naaccrId=\"primarySite\">C001</Item>\n"
+                + "      <Item naaccrId=\"histologicTypeIcdO3\">8000</Item>\n"
+                + "    </Tumor>\n"
+                + "  </Patient>\n"
+                + "  <Patient>\n"
+                + "    <Item naaccrId=\"yearDx\">2019</Item>\n"
+                + "    <Tumor>\n"
+                + "      <Item naaccrId=\"primarySite\">C509</Item>\n"
+                + "      <Item naaccrId=\"histologicTypeIcdO3\">8000</Item>\n"
+                + "      <Item naaccrId=\"tumorSizeSummary\">010</Item>\n"
+                + "    </Tumor>\n"
+                + "  </Patient>\n"
+                + "</NaaccrData>\n";
+
+        List<TumorResult> results = new ArrayList<>();
+        long count = new NaaccrXmlStager(_ENGINE, Collections.singletonList(size), 1).stage(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), results::add);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(results).extracting(TumorResult::getPatientIndex).containsExactly(0, 0, 1);
+        assertThat(results).extracting(TumorResult::getTumorIndex).containsExactly(0, 1, 0);
+        assertThat(results).extracting(r -> r.getData().getResult()).containsExactly(Result.STAGED, Result.FAILED_NO_MATCHING_SCHEMA, Result.STAGED);
+
+        // only the staging items are extracted, and the items of the patient override the ones of the NaaccrData element
+        assertThat(results.get(0).getData().getInput()).containsOnlyKeys("site", "hist", "year_dx", "size").containsEntry("size", "075").containsEntry("year_dx", "2018");
+        assertThat(results.get(0).getData().getOutput()).containsEntry("t", "T2").containsEntry("stage", "2");
+        assertThat(results.get(2).getData().getInput()).containsEntry("year_dx", "2019");
+        assertThat(results.get(2).getData().getOutput()).containsEntry("t", "T1").containsEntry("stage", "1");
+    }
+
+    @Test
+    public void testInvalidXml() {
+        NaaccrXmlStager stager = new NaaccrXmlStager(_ENGINE, Collections.emptyList());
+
+        assertThatThrownBy(() -> stager.stage(new ByteArrayInputStream("<NaaccrData><Patient>".getBytes(StandardCharsets.UTF_8)), r -> { }))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import com.imsweb.seerapi.client.SeerApi;
+import com.imsweb.seerapi.client.staging.cs.CsSchemaLookup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchemaLookupCacheTest {
+
+    private MockWebServer _server;
+    private StagingService _staging;
+
+    @Before
+    public void setup() throws IOException {
+        _server = new MockWebServer();
+        _server.start();
+        _staging = new SeerApi.Builder().url(_server.url("/rest/").toString()).apiKey("key").connect().staging();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        _server.shutdown();
+    }
+
+    @Test
+    public void testLookup() throws IOException, InterruptedException {
+        _server.enqueue(new MockResponse().setBody("[{\"id\":\"breast\"}]"));
+        _server.enqueue(new MockResponse().setBody("[{\"id\":\"nasopharynx\"}]"));
+
+        SchemaLookupCache cache = new SchemaLookupCache(_staging, "cs", "02.05.50", 1);
+
+        assertThat(cache.lookup(new CsSchemaLookup("C509", "8000"))).extracting("id").containsExactly("breast");
+        assertThat(cache.lookup(new SchemaLookup("C509", "8000"))).extracting("id").containsExactly("breast");
+        assertThat(_server.getRequestCount()).isEqualTo(1);
+        assertThat(_server.takeRequest().getPath()).isEqualTo("/rest/staging/cs/02.05.50/schemas/lookup");
+
+        // a different lookup evicts the first one
+        assertThat(cache.lookup(new CsSchemaLookup("C111", "8000", "010"))).extracting("id").containsExactly("nasopharynx");
+        assertThat(cache.size()).isEqualTo(1);
+
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getHitRate()).isEqualTo(1.0 / 3);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.imsweb.seerapi.client.staging.SchemaResolutionMatrix.Resolution;
+import com.imsweb.seerapi.client.staging.SchemaResolutionMatrix.Status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchemaResolutionMatrixTest {
+
+    @Test
+    public void testResolve() {
+        SchemaResolutionMatrix matrix = new SchemaResolutionMatrix(new StagingEngine(StagingTestData.schemas(), StagingTestData.tables()));
+
+        Resolution resolution = matrix.resolve("C509", "8000");
+        assertThat(resolution.getStatus()).isEqualTo(Status.MATCHED);
+        assertThat(resolution.getSchemaIds()).containsExactly("breast");
+        assertThat(matrix.getSchemaId("C509", "8000")).isEqualTo("breast");
+
+        resolution = matrix.resolve("C111", "9999");
+        assertThat(resolution.getStatus()).isEqualTo(Status.NEEDS_DISCRIMINATOR);
+        assertThat(resolution.getSchemaIds()).containsExactly("nasopharynx", "pharyngeal_tonsil");
+        assertThat(resolution.getDiscriminatorKeys()).containsExactly("ssf25");
+        assertThat(matrix.getSchemaId("C111", "9999")).isNull();
+
+        resolution = matrix.resolve("C110", "8000");
+        assertThat(resolution.getStatus()).isEqualTo(Status.NEEDS_DISCRIMINATOR);
+        assertThat(resolution.getSchemaIds()).containsExactly("nasopharynx");
+
+        assertThat(matrix.resolve("C000", "8000").getStatus()).isEqualTo(Status.NO_MATCH);
+        assertThat(matrix.resolve("C999", "8000").getStatus()).isEqualTo(Status.NOT_INDEXED);
+        assertThat(matrix.resolve("C509", "7999").getStatus()).isEqualTo(Status.NOT_INDEXED);
+        assertThat(matrix.resolve("C509", null).getStatus()).isEqualTo(Status.NOT_INDEXED);
+    }
+
+    @Test
+    public void testEngineLookup() {
+        List<StagingSchema> schemas = StagingTestData.schemas();
+        List<StagingTable> tables = StagingTestData.tables();
+        StagingEngine engine = new StagingEngine(schemas, tables);
+        StagingEngine indexed = new StagingEngine(schemas, tables);
+        indexed.buildResolutionMatrix();
+
+        for (String site : new String[] {"C000", "C110", "C111", "C500", "C509", "C809", "C999"}) {
+            for (String ssf25 : new String[] {null, "010", "030", "999"}) {
+                SchemaLookup lookup = new SchemaLookup(site, "8500");
+                lookup.setInput("ssf25", ssf25);
+
+                assertThat(indexed.lookupSchema(lookup)).as(lookup.getInputs().toString()).isEqualTo(engine.lookupSchema(lookup));
+            }
+        }
+    }
+}
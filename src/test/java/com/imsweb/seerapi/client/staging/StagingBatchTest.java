@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import com.imsweb.seerapi.client.AsyncService;
+import com.imsweb.seerapi.client.BadRequestException;
+import com.imsweb.seerapi.client.SeerApi;
+import com.imsweb.seerapi.client.staging.StagingBatch.BatchResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StagingBatchTest {
+
+    private MockWebServer _server;
+    private AsyncService<StagingService> _staging;
+    private final AtomicInteger _inFlight = new AtomicInteger();
+    private final AtomicInteger _maxInFlight = new AtomicInteger();
+
+    @Before
+    public void setup() throws IOException {
+        _server = new MockWebServer();
+        _server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                _maxInFlight.accumulateAndGet(_inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                _inFlight.decrementAndGet();
+
+                String body = request.getBody().readUtf8();
+                if (body.contains("C999"))
+                    return new MockResponse().setResponseCode(400);
+
+                return new MockResponse().setBody("{\"result\":\"STAGED\",\"schema_id\":\"breast\",\"input\":" + body + "}");
+            }
+        });
+        _server.start();
+        _staging = new SeerApi.Builder().url(_server.url("/rest/").toString()).apiKey("key").connect().async(StagingService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        _server.shutdown();
+    }
+
+    @Test
+    public void testStageAll() throws InterruptedException {
+        List<StagingData> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            records.add(new StagingData(i == 17 ? "C999" : "C509", String.valueOf(8000 + i)));
+
+        List<BatchResult> results = new StagingBatch(_staging, "cs", "02.05.50", 3).stageAll(records);
+
+        assertThat(results).hasSize(50);
+        for (int i = 0; i < 50; i++) {
+            BatchResult result = results.get(i);
+            assertThat(result.getIndex()).isEqualTo(i);
+            assertThat(result.getRecord()).isSameAs(records.get(i));
+
+            if (i == 17) {
+                assertThat(result.isSuccessful()).isFalse();
+                assertThat(result.getData()).isNull();
+                assertThat(result.getError()).isInstanceOf(BadRequestException.class);
+            }
+            else {
+                assertThat(result.isSuccessful()).isTrue();
+                assertThat(result.getData().getResult()).isEqualTo(StagingData.Result.STAGED);
+                assertThat(result.getData().getInput(StagingData.HISTOLOGY_KEY)).isEqualTo(String.valueOf(8000 + i));
+            }
+        }
+
+        assertThat(_server.getRequestCount()).isEqualTo(50);
+        assertThat(_maxInFlight.get()).isBetween(1, 3);
+    }
+}
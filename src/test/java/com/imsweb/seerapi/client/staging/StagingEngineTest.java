@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.imsweb.seerapi.client.staging.StagingData.Result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StagingEngineTest {
+
+    private static StagingEngine _ENGINE;
+
+    @BeforeClass
+    public static void setup() {
+        _ENGINE = new StagingEngine(StagingTestData.schemas(), StagingTestData.tables());
+    }
+
+    @Test
+    public void testRanges() {
+        Map<String, String> context = Collections.singletonMap("year_dx", "2018");
+
+        assertThat(StagingRange.parse("001-050,999")).extracting(Object::toString).containsExactly("001-050", "999");
+        assertThat(StagingRange.parse("001-050").get(0).contains("010", context)).isTrue();
+        assertThat(StagingRange.parse("001-050").get(0).contains("10", context)).isFalse();
+        assertThat(StagingRange.parse("001-050").get(0).contains("051", context)).isFalse();
+        assertThat(StagingRange.parse("0.1-99.9").get(0).contains("5", context)).isTrue();
+        assertThat(StagingRange.parse("*").get(0).contains(null, context)).isTrue();
+        assertThat(StagingRange.parse("").get(0).contains(null, context)).isTrue();
+        assertThat(StagingRange.parse("").get(0).contains("1", context)).isFalse();
+        assertThat(StagingRange.parse("2004-{{year_dx}}").get(0).contains("2017", context)).isTrue();
+        assertThat(StagingRange.parse("2004-{{year_dx}}").get(0).contains("2019", context)).isFalse();
+    }
+
+    @Test
+    public void testLookupSchema() {
+        assertThat(_ENGINE.lookupSchema(new SchemaLookup("C509", "8000"))).extracting("id").containsExactly("breast");
+        assertThat(_ENGINE.lookupSchema(new SchemaLookup("C111", "8000"))).extracting("id").containsExactly("nasopharynx", "pharyngeal_tonsil");
+
+        SchemaLookup lookup = new SchemaLookup("C111", "8000");
+        lookup.setInput("ssf25", "010");
+        assertThat(_ENGINE.lookupSchema(lookup)).extracting("id").containsExactly("nasopharynx");
+
+        // invalid site
+        assertThat(_ENGINE.lookupSchema(new SchemaLookup("C999", "8000"))).isEmpty();
+    }
+
+    @Test
+    public void testStage() {
+        StagingData data = _ENGINE.stage(input("C509", "8000", "2018", "010"));
+
+        assertThat(data.getResult()).isEqualTo(Result.STAGED);
+        assertThat(data.getSchemaId()).isEqualTo("breast");
+        assertThat(data.getErrors()).isEmpty();
+        assertThat(data.getPath()).containsExactly("size_t", "t_to_stage");
+        assertThat(data.getOutput()).containsEntry("t", "T1").containsEntry("stage", "1").containsEntry("schema_number", "20");
+
+        data = _ENGINE.stage(input("C509", "8000", "2018", "075"));
+        assertThat(data.getResult()).isEqualTo(Result.STAGED);
+        assertThat(data.getPath()).containsExactly("size_t", "size_t_large", "t_to_stage");
+        assertThat(data.getOutput()).containsEntry("t", "T2").containsEntry("stage", "2");
+
+        // ERROR endpoints add an error and stop the mapping
+        data = _ENGINE.stage(input("C509", "8000", "2018", "999"));
+        assertThat(data.getResult()).isEqualTo(Result.STAGED);
+        assertThat(data.getErrors()).extracting("type").containsExactly(StagingError.Type.STAGING_ERROR);
+        assertThat(data.getOutput()).containsEntry("t", "").containsEntry("stage", "99");
+
+        // no match in a table
+        data = _ENGINE.stage(input("C509", "8000", "2018", "ABC"));
+        assertThat(data.getResult()).isEqualTo(Result.STAGED);
+        assertThat(data.getErrors()).extracting("type").contains(StagingError.Type.MATCH_NOT_FOUND);
+    }
+
+    @Test
+    public void testStageFailures() {
+        assertThat(_ENGINE.stage(input("C509", null, "2018", "010")).getResult()).isEqualTo(Result.FAILED_MISSING_SITE_OR_HISTOLOGY);
+        assertThat(_ENGINE.stage(input("C001", "8000", "2018", "010")).getResult()).isEqualTo(Result.FAILED_NO_MATCHING_SCHEMA);
+        assertThat(_ENGINE.stage(input("C111", "8000", "2018", "010")).getResult()).isEqualTo(Result.FAILED_MULITPLE_MATCHING_SCHEMAS);
+        assertThat(_ENGINE.stage(input("C509", "8000", "1950", "010")).getResult()).isEqualTo(Result.FAILED_INVALID_YEAR_DX);
+
+        StagingData data = _ENGINE.stage(input("C509", "8000", "2018", "XYZ"));
+        assertThat(data.getResult()).isEqualTo(Result.FAILED_INVALID_INPUT);
+        assertThat(data.getErrors()).extracting("type").containsExactly(StagingError.Type.INVALID_REQUIRED_INPUT);
+    }
+
+    @Test
+    public void testRestage() {
+        assertThat(_ENGINE.getRelevantKeys(null)).containsExactlyInAnyOrder("site", "hist", "ssf25");
+        assertThat(_ENGINE.getRelevantKeys("breast")).containsExactlyInAnyOrder("site", "hist", "ssf25", "year_dx", "size", "t");
+
+        StagingData previous = _ENGINE.stage(input("C509", "8000", "2018", "075"));
+
+        // a key not used by the schema
+        Map<String, String> input = input("C509", "8000", "2018", "075");
+        input.put("ssf1", "020");
+        assertThat(_ENGINE.hasRelevantChanges(previous, input)).isFalse();
+        assertThat(_ENGINE.restage(previous, input)).isSameAs(previous);
+
+        // a key read by a table
+        input.put("size", "010");
+        assertThat(_ENGINE.hasRelevantChanges(previous, input)).isTrue();
+        StagingData data = _ENGINE.restage(previous, input);
+        assertThat(data).isNotSameAs(previous);
+        assertThat(data.getOutput()).containsEntry("t", "T1").containsEntry("stage", "1");
+
+        // a discriminator can change the schema
+        input = input("C509", "8000", "2018", "075");
+        input.put("ssf25", "010");
+        assertThat(_ENGINE.hasRelevantChanges(previous, input)).isTrue();
+
+        // failed lookups only depend on the lookup keys
+        previous = _ENGINE.stage(input("C111", "8000", "2018", "075"));
+        assertThat(_ENGINE.restage(previous, input("C111", "8000", "2019", "010"))).isSameAs(previous);
+        input = input("C111", "8000", "2018", "075");
+        input.put("ssf25", "010");
+        assertThat(_ENGINE.restage(previous, input).getSchemaId()).isEqualTo("nasopharynx");
+    }
+
+    @Test
+    public void testBundle() throws IOException {
+        StagingBundle bundle = new StagingBundle("test", "1.0", StagingTestData.schemas(), StagingTestData.tables());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        bundle.write(os);
+        bundle = StagingBundle.read(new ByteArrayInputStream(os.toByteArray()));
+
+        assertThat(bundle.getAlgorithm()).isEqualTo("test");
+        assertThat(bundle.getSchemas()).hasSize(3);
+        assertThat(bundle.getTables()).hasSize(10);
+
+        StagingData data = new StagingEngine(bundle).stage(input("C509", "8000", "2018", "075"));
+        assertThat(data.getResult()).isEqualTo(Result.STAGED);
+        assertThat(data.getOutput()).containsEntry("t", "T2").containsEntry("stage", "2");
+    }
+
+    private static Map<String, String> input(String site, String hist, String year, String size) {
+        Map<String, String> input = new HashMap<>();
+        input.put("site", site);
+        input.put("hist", hist);
+        input.put("year_dx", year);
+        input.put("size", size);
+        return input;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.imsweb.seerapi.client.staging.StagingData.Result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class StagingMemoizerTest {
+
+    private static final StagingEngine _ENGINE = new StagingEngine(StagingTestData.schemas(), StagingTestData.tables());
+
+    @Test
+    public void testStage() {
+        StagingMemoizer memoizer = new StagingMemoizer(_ENGINE);
+
+        for (String size : new String[] {"010", "075", "999", "ABC", "XYZ"}) {
+            StagingData expected = _ENGINE.stage(input("C509", "8000", "2018", size));
+            for (int i = 0; i < 2; i++) {
+                StagingData data = memoizer.stage(input("C509", "8000", "2018", size));
+                assertThat(data.getResult()).isEqualTo(expected.getResult());
+                assertThat(data.getSchemaId()).isEqualTo(expected.getSchemaId());
+                assertThat(data.getOutput()).isEqualTo(expected.getOutput());
+                assertThat(data.getPath()).isEqualTo(expected.getPath());
+                assertThat(data.getErrors()).extracting("type", "table", "message")
+                        .isEqualTo(expected.getErrors().stream().map(e -> tuple(e.getType(), e.getTable(), e.getMessage())).collect(Collectors.toList()));
+            }
+        }
+
+        // the invalid input fails before processing, so it is never cached
+        assertThat(memoizer.getMissCount()).isEqualTo(4);
+        assertThat(memoizer.getHitCount()).isEqualTo(4);
+        assertThat(memoizer.getHitRate()).isEqualTo(0.5);
+        assertThat(memoizer.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void testRelevantInputs() {
+        StagingMemoizer memoizer = new StagingMemoizer(_ENGINE);
+
+        StagingData first = memoizer.stage(input("C509", "8000", "2018", "075"));
+
+        // inputs not used by the schema are not part of the key
+        Map<String, String> input = input("C509", "8000", "2018", "075");
+        input.put("ssf1", "020");
+        StagingData second = memoizer.stage(input);
+        assertThat(memoizer.getHitCount()).isEqualTo(1);
+        assertThat(second.getOutput()).isEqualTo(first.getOutput());
+        assertThat(second.getInput("ssf1")).isEqualTo("020");
+
+        // the results are copies
+        second.getPath().clear();
+        second.getOutput().clear();
+        StagingData third = memoizer.stage(input("C509", "8000", "2018", "075"));
+        assertThat(third.getPath()).containsExactly("size_t", "size_t_large", "t_to_stage");
+        assertThat(third.getOutput()).containsEntry("t", "T2").containsEntry("stage", "2");
+
+        // a different used input is processed
+        memoizer.stage(input("C509", "8000", "2019", "075"));
+        assertThat(memoizer.getMissCount()).isEqualTo(2);
+
+        memoizer.clear();
+        assertThat(memoizer.size()).isZero();
+        assertThat(memoizer.getHitCount()).isZero();
+    }
+
+    @Test
+    public void testInputNotUsedForStaging() {
+        // the size is read by the mapping tables even if the schema does not flag it as used for staging
+        List<StagingSchema> schemas = StagingTestData.schemas();
+        schemas.get(0).getInputs().stream().filter(i -> "size".equals(i.getKey())).forEach(i -> i.setUsedForStaging(false));
+        StagingEngine engine = new StagingEngine(schemas, StagingTestData.tables());
+        StagingMemoizer memoizer = new StagingMemoizer(engine);
+
+        assertThat(memoizer.stage(input("C509", "8000", "2018", "010")).getOutput()).containsEntry("t", "T1").containsEntry("stage", "1");
+
+        StagingData data = memoizer.stage(input("C509", "8000", "2018", "075"));
+        assertThat(data.getOutput()).isEqualTo(engine.stage(input("C509", "8000", "2018", "075")).getOutput());
+        assertThat(data.getOutput()).containsEntry("t", "T2").containsEntry("stage", "2");
+        assertThat(memoizer.getHitCount()).isZero();
+    }
+
+    @Test
+    public void testMaxSize() {
+        StagingMemoizer memoizer = new StagingMemoizer(_ENGINE, 2);
+
+        for (String size : new String[] {"010", "020", "030", "010"})
+            assertThat(memoizer.stage(input("C509", "8000", "2018", size)).getResult()).isEqualTo(Result.STAGED);
+
+        // "010" was evicted by "030"
+        assertThat(memoizer.size()).isEqualTo(2);
+        assertThat(memoizer.getMissCount()).isEqualTo(4);
+    }
+
+    private static Map<String, String> input(String site, String hist, String year, String size) {
+        Map<String, String> input = new HashMap<>();
+        input.put("site", site);
+        input.put("hist", hist);
+        input.put("year_dx", year);
+        input.put("size", size);
+        return input;
+    }
+}
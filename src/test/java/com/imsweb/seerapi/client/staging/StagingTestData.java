@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.seerapi.client.staging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.imsweb.seerapi.client.staging.StagingColumnDefinition.ColumnType;
+import com.imsweb.seerapi.client.staging.StagingSchema.StagingInputErrorHandler;
+
+/**
+ * Small in-memory algorithm used by the local staging tests.  Table columns starting with "=" are ENDPOINT columns.
+ */
+final class StagingTestData {
+
+    private StagingTestData() {
+    }
+
+    static List<StagingSchema> schemas() {
+        StagingSchema breast = schema("breast", "breast_selection");
+        breast.setInitialContext(new LinkedHashSet<>(Collections.singletonList(new StagingKeyValue("schema_number", "20"))));
+        breast.setOnInvalidInput(StagingInputErrorHandler.FAIL_WHEN_USED_FOR_STAGING);
+        breast.setInputs(Arrays.asList(input("site", "primary_site"), input("hist", "histology"), input("year_dx", "year_dx"), input("size", "size_values")));
+
+        StagingSchemaOutput t = new StagingSchemaOutput("t", "T");
+        StagingSchemaOutput stage = new StagingSchemaOutput("stage", "Stage");
+        stage.setDefault("99");
+        StagingSchemaOutput number = new StagingSchemaOutput("schema_number", "Schema Number");
+        breast.setOutputs(Arrays.asList(t, stage, number));
+
+        StagingTablePath sizePath = new StagingTablePath("size_t");
+        sizePath.setInputMapping(new LinkedHashSet<>(Collections.singletonList(new StagingKeyMapping("size", "tumor_size"))));
+        sizePath.setOutputMapping(new LinkedHashSet<>(Collections.singletonList(new StagingKeyMapping("t_value", "t"))));
+        StagingMapping tMapping = new StagingMapping("t", "T");
+        tMapping.setInclusionTables(Collections.singletonList(new StagingTablePath("year_dx")));
+        tMapping.setTablePaths(Arrays.asList(sizePath, new StagingTablePath("t_to_stage")));
+
+        breast.setMappings(Collections.singletonList(tMapping));
+
+        return Arrays.asList(breast, schema("nasopharynx", "nasopharynx_selection"), schema("pharyngeal_tonsil", "pharyngeal_tonsil_selection"));
+    }
+
+    static List<StagingTable> tables() {
+        return Arrays.asList(
+                table("primary_site", cols("site"), row("C000-C809")),
+                table("histology", cols("hist"), row("8000-9999")),
+                table("year_dx", cols("year_dx"), row("2004-2030")),
+                table("size_values", cols("size"), row("000-998"), row("999"), row("ABC")),
+                table("breast_selection", cols("site", "hist"), row("C500-C509", "8000-9999")),
+                table("nasopharynx_selection", cols("site", "hist", "ssf25"), row("C110-C119", "8000-9999", "010,020")),
+                table("pharyngeal_tonsil_selection", cols("site", "hist", "ssf25"), row("C111", "8000-9999", "030,981")),
+                table("size_t", cols("tumor_size", "=t_value"), row("000-050", "VALUE:T1"), row("051-998", "JUMP:size_t_large"), row("999", "ERROR:Unknown size")),
+                table("size_t_large", cols("tumor_size", "=t_value"), row("*", "VALUE:T2")),
+                table("t_to_stage", cols("t", "=stage"), row("T1", "VALUE:1"), row("T2", "VALUE:2")));
+    }
+
+    private static StagingSchema schema(String id, String selectionTable) {
+        StagingSchema schema = new StagingSchema();
+        schema.setId(id);
+        schema.setAlgorithm("test");
+        schema.setVersion("1.0");
+        schema.setSchemaSelectionTable(selectionTable);
+        return schema;
+    }
+
+    private static StagingSchemaInput input(String key, String table) {
+        StagingSchemaInput input = new StagingSchemaInput(key, key, table);
+        input.setUsedForStaging(true);
+        return input;
+    }
+
+    private static List<StagingColumnDefinition> cols(String... keys) {
+        return Arrays.stream(keys).map(k -> k.startsWith("=") ? new StagingColumnDefinition(k.substring(1), k, ColumnType.ENDPOINT) :
+                new StagingColumnDefinition(k, k, ColumnType.INPUT)).collect(Collectors.toList());
+    }
+
+    private static String[] row(String... cells) {
+        return cells;
+    }
+
+    private static StagingTable table(String id, List<StagingColumnDefinition> columns, String[]... rows) {
+        StagingTable table = new StagingTable();
+        table.setId(id);
+        table.setAlgorithm("test");
+        table.setVersion("1.0");
+        table.setColumnDefinitions(columns);
+        table.setRawRows(Arrays.stream(rows).map(Arrays::asList).collect(Collectors.toList()));
+        return table;
+    }
+}